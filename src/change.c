@@ -447,6 +447,10 @@ changed_common(
 #ifdef FEAT_EVAL
     may_record_change(lnum, col, lnume, xtra);
 #endif
+#ifdef FEAT_JAVA
+    if (curbuf->b_java_listen)
+	java_record_change(curbuf, lnum, lnume, xtra);
+#endif
 #ifdef FEAT_DIFF
     if (curwin->w_p_diff && diff_internal())
 	curtab->tp_diff_update = TRUE;
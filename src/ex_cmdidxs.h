@@ -15,22 +15,22 @@ static const unsigned short cmdidxs1[26] =
   /* h */ 180,
   /* i */ 189,
   /* j */ 208,
-  /* k */ 213,
-  /* l */ 218,
-  /* m */ 280,
-  /* n */ 298,
-  /* o */ 318,
-  /* p */ 330,
-  /* q */ 369,
-  /* r */ 372,
-  /* s */ 392,
-  /* t */ 461,
-  /* u */ 506,
-  /* v */ 517,
-  /* w */ 538,
-  /* x */ 552,
-  /* y */ 562,
-  /* z */ 563
+  /* k */ 214,
+  /* l */ 219,
+  /* m */ 281,
+  /* n */ 299,
+  /* o */ 319,
+  /* p */ 331,
+  /* q */ 370,
+  /* r */ 373,
+  /* s */ 393,
+  /* t */ 462,
+  /* u */ 507,
+  /* v */ 518,
+  /* w */ 539,
+  /* x */ 553,
+  /* y */ 563,
+  /* z */ 564
 };
 
 /*
@@ -50,7 +50,7 @@ static const unsigned char cmdidxs2[26][26] =
   /* g */ {  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  1,  0,  0,  2,  0,  0,  4,  5,  0,  0,  0,  0 },
   /* h */ {  5,  0,  0,  0,  0,  0,  0,  0,  6,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0 },
   /* i */ {  1,  0,  0,  0,  0,  3,  0,  0,  0,  4,  0,  5,  6,  0,  0,  0,  0,  0, 14,  0, 16,  0,  0,  0,  0,  0 },
-  /* j */ {  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  3,  0,  0,  0,  0,  0,  4,  0,  0,  0,  0,  0 },
+  /* j */ {  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  4,  0,  0,  0,  0,  0,  5,  0,  0,  0,  0,  0 },
   /* k */ {  0,  0,  0,  0,  1,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0 },
   /* l */ {  3, 11, 15, 19, 20, 24, 27, 32,  0,  0,  0, 34, 37, 40, 44, 50,  0, 52, 61, 53, 54, 58, 60,  0,  0,  0 },
   /* m */ {  1,  0,  0,  0,  7,  0,  0,  0,  0,  0, 10,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0, 16 },
@@ -69,4 +69,4 @@ static const unsigned char cmdidxs2[26][26] =
   /* z */ {  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0,  0 }
 };
 
-static const int command_count = 578;
+static const int command_count = 579;
@@ -743,6 +743,9 @@ EXCMD(CMD_javafile,     "javafile",	ex_javafile,
 EXCMD(CMD_javarepl,	"javarepl",	ex_javarepl,
 	EX_EXTRA|EX_NEEDARG|EX_CMDWIN|EX_RESTRICT,
 	ADDR_NONE),
+EXCMD(CMD_javastats,	"javastats",	ex_javastats,
+	EX_BANG|EX_TRLBAR|EX_CMDWIN|EX_RESTRICT,
+	ADDR_NONE),
 EXCMD(CMD_join,		"join",		ex_join,
 	EX_BANG|EX_RANGE|EX_WHOLEFOLD|EX_COUNT|EX_FLAGS|EX_TRLBAR|EX_CMDWIN|EX_LOCK_OK|EX_MODIFY,
 	ADDR_LINES),
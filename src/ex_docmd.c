@@ -178,6 +178,7 @@ static void	ex_popup(exarg_T *eap);
 # define ex_java		ex_script_ni
 # define ex_javafile		ex_ni
 # define ex_javarepl		ex_ni
+# define ex_javastats		ex_ni
 #endif
 #ifndef FEAT_LUA
 # define ex_lua			ex_script_ni
@@ -2198,6 +2198,10 @@ parse_queued_messages(void)
 	// Process the queued clientserver messages.
 	server_parse_messages();
 # endif
+# ifdef FEAT_JAVA
+	// Perform operations queued by background Java threads.
+	java_parse_pending_operations();
+# endif
 # ifdef FEAT_JOB_CHANNEL
 	// Check if any jobs have ended.  If so, repeat the above to handle
 	// changes, e.g. stdin may have been closed.
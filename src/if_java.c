@@ -27,6 +27,10 @@ static const char JVM_VIM_DICT_ITERATOR_CLASS_NAME[] = "vim/Dict$DictIterator";
 static const char JVM_VIM_BUFFER_CLASS_NAME[] = "vim/Buffer";
 static const char JVM_VIM_WINDOW_CLASS_NAME[] = "vim/Window";
 
+/* filters for Vim.buffers(), must match Vim.BUFFERS_* */
+#define JAVA_BUFFERS_LISTED	1
+#define JAVA_BUFFERS_LOADED	2
+
 /* macros to automatically do reference counting for native method that aren't
  * initiated by on the Java side, such as ex_java, ex_javafile, and etc.
  */
@@ -51,6 +55,15 @@ static const char JVM_VIM_WINDOW_CLASS_NAME[] = "vim/Window";
 static JavaVM *jvm = NULL;
 static JNIEnv *env = NULL;
 
+/* set when a buffer has changes that Java listeners have not been told about */
+static int java_changes_pending = FALSE;
+
+#ifdef UNIX
+/* pipe used by background Java threads to wake up Vim when it is waiting for
+ * input, so that queued operations are performed promptly */
+static int java_wakeup_pipe[2] = {-1, -1};
+#endif
+
 #ifdef DYNAMIC_JAVA
 
 #ifndef WIN3264
@@ -379,6 +392,39 @@ Java_vim_Vim__1emsg(JNIEnv *_env, jclass jcls, jstring jmsg)
     release_cstring2(_env, jmsg, message);
 }
 
+/* used when several queued messages have been coalesced into one operation,
+ * every line still becomes its own message */
+    JNIEXPORT void JNICALL
+Java_vim_Vim__1msgLines(JNIEnv *_env, jclass jcls, jstring jtext,
+			jboolean is_error)
+{
+    const char *text;
+    char_u *copy;
+    char_u *line;
+    char_u *nl;
+
+    if (jtext == NULL)
+	return;
+    text = to_cstring2(_env, jtext);
+    copy = vim_strsave((char_u *)text);
+    release_cstring2(_env, jtext, text);
+    if (copy == NULL)
+	return;
+
+    for (line = copy; line != NULL; line = nl)
+    {
+	nl = vim_strchr(line, '\n');
+	if (nl != NULL)
+	    *nl++ = NUL;
+	if (is_error)
+	    EMSG(line);
+	else
+	    MSG(line);
+    }
+
+    vim_free(copy);
+}
+
     JNIEXPORT jobject JNICALL
 Java_vim_Vim__1eval(JNIEnv *_env, jclass jcls, jstring jexpr)
 {
@@ -423,6 +469,32 @@ Java_vim_Vim__1beep(JNIEnv *_env, jclass jcls)
     vim_beep();
 }
 
+/* polled by the main thread while an interpreter evaluates on another thread,
+ * returns whether CTRL-C was pressed */
+    JNIEXPORT jboolean JNICALL
+Java_vim_Vim__1checkInterrupt(JNIEnv *_env, jclass jcls)
+{
+    ui_breakcheck();
+    if (!got_int)
+	return JNI_FALSE;
+    got_int = FALSE;
+    return JNI_TRUE;
+}
+
+/* called from any Java thread after it queues an operation for the main
+ * thread */
+    JNIEXPORT void JNICALL
+Java_vim_Vim__1wakeVim(JNIEnv *_env, jclass jcls)
+{
+#ifdef UNIX
+    char c = 0;
+
+    if (java_wakeup_pipe[1] >= 0)
+	/* a full pipe already means that a wakeup is pending */
+	(void)write(java_wakeup_pipe[1], &c, 1);
+#endif
+}
+
     JNIEXPORT jobject JNICALL
 Java_vim_Vim__1buffer(JNIEnv *_env, jclass jcls, jstring jarg)
 {
@@ -520,6 +592,99 @@ Java_vim_Vim__1window(JNIEnv *_env, jclass jcls, jstring jarg)
     return object;
 }
 
+/*
+ * Returns whether buffer "b" passes the filter "flags" of Vim.buffers().
+ */
+    static int
+java_buffer_matches(buf_T *b, int flags)
+{
+    if ((flags & JAVA_BUFFERS_LISTED) && !b->b_p_bl)
+	return FALSE;
+    if ((flags & JAVA_BUFFERS_LOADED) && b->b_ml.ml_mfp == NULL)
+	return FALSE;
+    return TRUE;
+}
+
+/*
+ * Returns an array with a vim.Buffer for every buffer that passes "flags",
+ * in buffer list order, creating the proxies that don't exist yet.
+ */
+    JNIEXPORT jobjectArray JNICALL
+Java_vim_Vim__1buffers(JNIEnv *_env, jclass jcls, jint flags)
+{
+    buf_T *b;
+    int count = 0;
+    int i = 0;
+    jclass cls;
+    jmethodID mid;
+    jobjectArray result;
+    jobject object;
+
+    FOR_ALL_BUFFERS(b)
+	if (java_buffer_matches(b, flags))
+	    ++count;
+
+    cls = (*_env)->FindClass(_env, JVM_VIM_BUFFER_CLASS_NAME);
+    mid = (*_env)->GetStaticMethodID(_env, cls, "getOrCreate",
+				     "(IJ)Lvim/Buffer;");
+    result = (*_env)->NewObjectArray(_env, count, cls, NULL);
+    if (!result)
+	return NULL;
+
+    FOR_ALL_BUFFERS(b)
+    {
+	if (!java_buffer_matches(b, flags))
+	    continue;
+	object = (*_env)->CallStaticObjectMethod(_env, cls, mid,
+						 b->b_fnum, (jlong)b);
+	if ((*_env)->ExceptionCheck(_env))
+	    return NULL;
+	(*_env)->SetObjectArrayElement(_env, result, i++, object);
+	(*_env)->DeleteLocalRef(_env, object);
+    }
+    return result;
+}
+
+/*
+ * Returns an array with a vim.Window for every window, or only for those in
+ * the current tab page, in order.
+ */
+    JNIEXPORT jobjectArray JNICALL
+Java_vim_Vim__1windows(JNIEnv *_env, jclass jcls, jboolean current_tab)
+{
+    tabpage_T *tp;
+    win_T *wp;
+    int count = 0;
+    int i = 0;
+    jclass cls;
+    jmethodID mid;
+    jobjectArray result;
+    jobject object;
+
+    FOR_ALL_TAB_WINDOWS(tp, wp)
+	if (!current_tab || tp == curtab)
+	    ++count;
+
+    cls = (*_env)->FindClass(_env, JVM_VIM_WINDOW_CLASS_NAME);
+    mid = (*_env)->GetStaticMethodID(_env, cls, "getOrCreate",
+				     "(J)Lvim/Window;");
+    result = (*_env)->NewObjectArray(_env, count, cls, NULL);
+    if (!result)
+	return NULL;
+
+    FOR_ALL_TAB_WINDOWS(tp, wp)
+    {
+	if (current_tab && tp != curtab)
+	    continue;
+	object = (*_env)->CallStaticObjectMethod(_env, cls, mid, (jlong)wp);
+	if ((*_env)->ExceptionCheck(_env))
+	    return NULL;
+	(*_env)->SetObjectArrayElement(_env, result, i++, object);
+	(*_env)->DeleteLocalRef(_env, object);
+    }
+    return result;
+}
+
     JNIEXPORT jobject JNICALL
 Java_vim_Vim__1open(JNIEnv *_env, jclass jcls, jstring jfname)
 {
@@ -542,6 +707,114 @@ Java_vim_Vim__1open(JNIEnv *_env, jclass jcls, jstring jfname)
     return object;
 }
 
+/*
+ * Like Java_vim_Vim__1open(), but also loads the buffer with "jlines", read
+ * from the file by Java, as if it had been read by Vim.  "eol" is whether
+ * the file ended in a line break and "dos" whether its lines ended in CR-LF.
+ * A buffer that is already loaded is left alone.  No autocommands are
+ * triggered.
+ */
+    JNIEXPORT jobject JNICALL
+Java_vim_Vim__1openWithLines(JNIEnv *_env, jclass jcls, jstring jfname,
+			     jbyteArray jtext, jint num_lines, jboolean eol,
+			     jboolean dos, jstring jencoding)
+{
+    buf_T *b;
+    buf_T *save_curbuf;
+    const char *fname;
+    const char *encoding;
+    char_u *fenc;
+    jbyte *text;
+    char_u *line;
+    char_u *text_end;
+    jint i;
+    stat_T st;
+    int ok = TRUE;
+    jclass cls;
+    jmethodID mid;
+
+    /* the lines have been converted to UTF-8 */
+    if (!enc_utf8)
+    {
+	(*_env)->ThrowNew(_env, (*_env)->FindClass(_env, "java/lang/Exception"),
+			  "openAll() needs 'encoding' set to utf-8");
+	return NULL;
+    }
+
+    fname = to_cstring2(_env, jfname);
+    b = buflist_new((char_u *)fname, NULL, 1L, BLN_LISTED);
+    release_cstring2(_env, jfname, fname);
+    if (b == NULL)
+	return NULL;
+
+    if (b->b_ml.ml_mfp == NULL)
+    {
+	buf_copy_options(b, BCO_ENTER);
+	save_curbuf = curbuf;
+	curbuf = b;
+	if (ml_open(curbuf) == FAIL)
+	    ok = FALSE;
+
+	/* every line is NUL terminated, NULs within lines are already NLs */
+	text = (*_env)->GetByteArrayElements(_env, jtext, NULL);
+	if (text == NULL)
+	    ok = FALSE;
+	else
+	{
+	    line = (char_u *)text;
+	    text_end = line + (*_env)->GetArrayLength(_env, jtext);
+	    for (i = 0; ok && i < num_lines && line < text_end; ++i)
+	    {
+		/* ml_open() created an empty first line */
+		if (i == 0)
+		    ok = ml_replace((linenr_T)1, line, TRUE) == OK;
+		else
+		    ok = ml_append((linenr_T)i, line, (colnr_T)0, FALSE)
+									== OK;
+		line += STRLEN(line) + 1;
+	    }
+	    (*_env)->ReleaseByteArrayElements(_env, jtext, text, JNI_ABORT);
+	}
+
+	if (ok)
+	{
+	    curbuf->b_p_eol = eol ? TRUE : FALSE;
+	    set_fileformat(dos ? EOL_DOS : EOL_UNIX, OPT_LOCAL);
+	    encoding = to_cstring2(_env, jencoding);
+	    fenc = enc_canonize((char_u *)encoding);
+	    release_cstring2(_env, jencoding, encoding);
+	    if (fenc != NULL)
+		set_string_option_direct((char_u *)"fenc", -1, fenc,
+						       OPT_FREE|OPT_LOCAL, 0);
+	    vim_free(fenc);
+	    curbuf->b_flags &= ~(BF_NEVERLOADED | BF_NOTEDITED);
+	    if (curbuf->b_ffname != NULL
+		    && mch_stat((char *)curbuf->b_ffname, &st) >= 0)
+		buf_store_time(curbuf, &st, curbuf->b_ffname);
+	    unchanged(curbuf, TRUE, FALSE);
+	}
+	else
+	    /* leave the buffer unloaded rather than half loaded */
+	    ml_close(curbuf, TRUE);
+	curbuf = save_curbuf;
+
+	if (!ok)
+	{
+	    if (!(*_env)->ExceptionCheck(_env))
+		(*_env)->ThrowNew(_env,
+			(*_env)->FindClass(_env, "java/lang/Exception"),
+			"cannot load buffer");
+	    return NULL;
+	}
+    }
+
+    cls = (*_env)->FindClass(_env, JVM_VIM_BUFFER_CLASS_NAME);
+    mid = (*_env)->GetStaticMethodID(_env, cls, "getOrCreate",
+				     "(IJ)Lvim/Buffer;");
+    return (*_env)->CallStaticObjectMethod(_env, cls, mid,
+					   b->b_fnum, (jlong)b);
+}
+
 /* =======   List type   ======= */
 
     JNIEXPORT void JNICALL
@@ -1010,7 +1283,7 @@ Java_vim_Buffer__1getLines(JNIEnv *_env, jclass jcls, jlong pointer,
     }
 
     result = (*_env)->NewObjectArray(_env,
-				     num_lines,
+				     endLineNumber - startLineNumber + 1,
 				     (*_env)->FindClass(_env, "java/lang/String"),
 				     NULL);
     if (!result)
@@ -1020,12 +1293,173 @@ Java_vim_Buffer__1getLines(JNIEnv *_env, jclass jcls, jlong pointer,
     {
 	line = (const char *) ml_get_buf(b, i, FALSE);
 	jline = to_jstring2(_env, line);
-	(*_env)->SetObjectArrayElement(_env, result, i - 1, jline);
+	if (jline == NULL)
+	    return NULL;
+	(*_env)->SetObjectArrayElement(_env, result, i - startLineNumber, jline);
+	/* don't run out of local references on a large range */
+	(*_env)->DeleteLocalRef(_env, jline);
     }
 
     return result;
 }
 
+/*
+ * Copies the lines "startLineNumber" to "endLineNumber" of the buffer into
+ * the direct ByteBuffer "jbuffer", between "position" and "limit", without
+ * creating a Java object per line.
+ *
+ * For n lines, n + 1 ints in native byte order come first, the offset of
+ * each line followed by the total number of bytes, and then the bytes of the
+ * lines without their NUL.  Offsets count from the first byte after the ints.
+ * Only whole lines are copied, as many as fit.
+ *
+ * Returns n, or -1 if the range or the ByteBuffer is invalid.
+ */
+    JNIEXPORT jint JNICALL
+Java_vim_Buffer__1readLines(JNIEnv *_env, jclass jcls, jlong pointer,
+			    jint startLineNumber, jint endLineNumber,
+			    jobject jbuffer, jint position, jint limit)
+{
+    buf_T *b;
+    char_u *base;
+    char_u *data;
+    char_u *line;
+    linenr_T lnum;
+    long avail;
+    long used;
+    long len;
+    jint offset;
+    int n;
+    int i;
+
+    b = (buf_T*)pointer;
+    if (startLineNumber < 1 || endLineNumber > b->b_ml.ml_line_count
+	|| startLineNumber > endLineNumber)
+    {
+	return -1;
+    }
+
+    base = (char_u *)(*_env)->GetDirectBufferAddress(_env, jbuffer);
+    if (base == NULL || position < 0 || limit < position
+	|| (jlong)limit > (*_env)->GetDirectBufferCapacity(_env, jbuffer))
+    {
+	return -1;
+    }
+    base += position;
+    avail = (long)(limit - position);
+
+    /* find out how many whole lines fit, each costs an offset and its bytes */
+    used = (long)sizeof(jint);
+    if (used > avail)
+	return 0;
+    n = 0;
+    for (lnum = startLineNumber; lnum <= endLineNumber; ++lnum)
+    {
+	len = (long)STRLEN(ml_get_buf(b, lnum, FALSE));
+	if (used + (long)sizeof(jint) + len > avail)
+	    break;
+	used += (long)sizeof(jint) + len;
+	++n;
+    }
+
+    /* the ints may not be aligned, so they are copied byte by byte */
+    data = base + (n + 1) * sizeof(jint);
+    used = 0;
+    for (i = 0; i < n; ++i)
+    {
+	line = ml_get_buf(b, (linenr_T)(startLineNumber + i), FALSE);
+	len = (long)STRLEN(line);
+	offset = (jint)used;
+	mch_memmove(base + i * sizeof(jint), &offset, sizeof(jint));
+	mch_memmove(data + used, line, (size_t)len);
+	used += len;
+    }
+    offset = (jint)used;
+    mch_memmove(base + n * sizeof(jint), &offset, sizeof(jint));
+
+    return n;
+}
+
+/*
+ * Copies the lines "startLineNumber" to "endLineNumber" of the buffer into
+ * the direct ByteBuffer "jbuffer", between "position" and "limit", as they
+ * would be written to a file: each line followed by the line break of
+ * 'fileformat' and with NULs restored.  The last line of the buffer only
+ * gets a line break when Vim would write one.  No 'fileencoding' conversion
+ * is done.  Only whole lines are copied, as many as fit.
+ *
+ * Returns the number of lines copied in the upper 32 bits and the number of
+ * bytes in the lower 32 bits, or -1 if the range or the ByteBuffer is
+ * invalid.
+ */
+    JNIEXPORT jlong JNICALL
+Java_vim_Buffer__1exportLines(JNIEnv *_env, jclass jcls, jlong pointer,
+			      jint startLineNumber, jint endLineNumber,
+			      jobject jbuffer, jint position, jint limit)
+{
+    buf_T *b;
+    char_u *base;
+    char_u *line;
+    char_u *eol_str;
+    linenr_T lnum;
+    long avail;
+    long used;
+    long len;
+    long eol_len;
+    long i;
+    int n;
+
+    b = (buf_T*)pointer;
+    if (startLineNumber < 1 || endLineNumber > b->b_ml.ml_line_count
+	|| startLineNumber > endLineNumber)
+    {
+	return -1;
+    }
+
+    base = (char_u *)(*_env)->GetDirectBufferAddress(_env, jbuffer);
+    if (base == NULL || position < 0 || limit < position
+	|| (jlong)limit > (*_env)->GetDirectBufferCapacity(_env, jbuffer))
+    {
+	return -1;
+    }
+    base += position;
+    avail = (long)(limit - position);
+
+    /* an empty buffer is written as an empty file */
+    if (b->b_ml.ml_flags & ML_EMPTY)
+	return (jlong)(endLineNumber - startLineNumber + 1) << 32;
+
+    switch (get_fileformat(b))
+    {
+	case EOL_DOS: eol_str = (char_u *)"\r\n"; break;
+	case EOL_MAC: eol_str = (char_u *)"\r"; break;
+	default:      eol_str = (char_u *)"\n"; break;
+    }
+    eol_len = (long)STRLEN(eol_str);
+
+    used = 0;
+    n = 0;
+    for (lnum = startLineNumber; lnum <= endLineNumber; ++lnum)
+    {
+	line = ml_get_buf(b, lnum, FALSE);
+	len = (long)STRLEN(line);
+	if (used + len + eol_len > avail)
+	    break;
+	for (i = 0; i < len; ++i)
+	    base[used + i] = line[i] == NL ? NUL : line[i];
+	used += len;
+	if (lnum < b->b_ml.ml_line_count || b->b_p_eol
+		|| (b->b_p_fixeol && !b->b_p_bin))
+	{
+	    mch_memmove(base + used, eol_str, (size_t)eol_len);
+	    used += eol_len;
+	}
+	++n;
+    }
+
+    return ((jlong)n << 32) | (jlong)used;
+}
+
 /* this belongs in the Vim class, but is here since it uses the above function */
     JNIEXPORT jstring JNICALL
 Java_vim_Vim__1line(JNIEnv *_env, jclass jcls)
@@ -1205,6 +1639,218 @@ Java_vim_Buffer__1insertLine(JNIEnv *_env, jclass jcls,
     update_screen(VALID);
 }
 
+/*
+ * Replaces the lines "start" to "end" of the buffer with the Strings in
+ * "jlines", which may hold more or fewer lines than the range, or none to
+ * delete it.  When "end" is "start" - 1 the lines are inserted above "start".
+ *
+ * Undo is saved once for the whole range and changed_lines() is called once,
+ * so the change is a single undo step.  Modelled on SetBufferLineList() in
+ * if_py_both.h.
+ */
+    JNIEXPORT void JNICALL
+Java_vim_Buffer__1replaceLines(JNIEnv *_env, jclass jcls, jlong pointer,
+			       jint start, jint end, jobjectArray jlines)
+{
+    buf_T *b;
+    buf_T *buf;
+    linenr_T lo;
+    linenr_T hi;
+    long old_len;
+    long new_len;
+    long kept_len;
+    long extra;
+    long i;
+    jstring jline;
+    const char *line;
+    char *error = NULL;
+
+    b = (buf_T *)pointer;
+
+    if (start < 1 || end < start - 1 || end > b->b_ml.ml_line_count)
+    {
+	javaV_ThrowAndReturn(_env, "invalid line range");
+    }
+
+    /* the range is lo to hi - 1, like in SetBufferLineList() */
+    lo = (linenr_T)start;
+    hi = (linenr_T)end + 1;
+    old_len = (long)(hi - lo);
+    new_len = (jlines == NULL) ? 0 : (long)(*_env)->GetArrayLength(_env, jlines);
+    extra = 0;
+
+    buf = curbuf;
+    curbuf = b;
+
+    if (u_save(lo - 1, hi) == FAIL)
+    {
+	curbuf = buf;
+	javaV_ThrowAndReturn(_env, "cannot save undo information");
+    }
+
+    /* delete the lines that are not replaced, from the top of the range */
+    for (i = 0; i < old_len - new_len; ++i)
+	if (ml_delete(lo) == FAIL)
+	{
+	    error = "cannot delete line";
+	    break;
+	}
+    extra -= i;
+    kept_len = old_len + extra;
+
+    /* replace the remaining lines of the range, then append the rest */
+    for (i = 0; error == NULL && i < new_len; ++i)
+    {
+	jline = (jstring)(*_env)->GetObjectArrayElement(_env, jlines, (jsize)i);
+	if (jline == NULL)
+	{
+	    error = "null line";
+	    break;
+	}
+	line = to_cstring2(_env, jline);
+	if (line == NULL)
+	{
+	    error = "out of memory";
+	    (*_env)->DeleteLocalRef(_env, jline);
+	    break;
+	}
+
+	if (i < kept_len)
+	{
+	    if (ml_replace(lo + (linenr_T)i, (char_u *)line, TRUE) == FAIL)
+		error = "cannot replace line";
+	}
+	else
+	{
+	    if (ml_append(lo + (linenr_T)i - 1, (char_u *)line, 0, FALSE) == FAIL)
+		error = "cannot insert line";
+	    else
+		++extra;
+	}
+
+	release_cstring2(_env, jline, line);
+	(*_env)->DeleteLocalRef(_env, jline);
+    }
+
+    /* marks inside the range are deleted, the ones below it are moved */
+    mark_adjust(lo, hi - 1, (long)MAXLNUM, extra);
+    changed_lines(lo, 0, hi, extra);
+
+    if (b == curwin->w_buffer) /* fix cursor in current window? */
+    {
+	if (curwin->w_cursor.lnum >= lo)
+	{
+	    if (curwin->w_cursor.lnum >= hi)
+	    {
+		curwin->w_cursor.lnum += extra;
+		check_cursor_col();
+	    }
+	    else if (extra < 0)
+	    {
+		curwin->w_cursor.lnum = lo;
+		check_cursor();
+	    }
+	    else
+		check_cursor_col();
+	    changed_cline_bef_curs();
+	}
+	invalidate_botline();
+    }
+
+    curbuf = buf;
+
+    if (error != NULL && !(*_env)->ExceptionCheck(_env))
+    {
+	javaV_ThrowAndReturn(_env, error);
+    }
+}
+
+    JNIEXPORT jlong JNICALL
+Java_vim_Buffer__1getChangedTick(JNIEnv *_env, jclass jcls, jlong pointer)
+{
+    buf_T *b;
+
+    b = (buf_T *)pointer;
+    return (jlong)CHANGEDTICK(b);
+}
+
+/*
+ * Fills "jstrings" with the name, full name and 'filetype', and "jnumbers"
+ * with the number, line count, b:changedtick and modified, loaded and listed
+ * flags of every buffer in "jpointers", JAVA_INFO_STRINGS and
+ * JAVA_INFO_NUMBERS entries per buffer.
+ */
+#define JAVA_INFO_STRINGS 3
+#define JAVA_INFO_NUMBERS 6
+    JNIEXPORT void JNICALL
+Java_vim_Buffer__1getInfo(JNIEnv *_env, jclass jcls, jlongArray jpointers,
+			  jobjectArray jstrings, jlongArray jnumbers)
+{
+    buf_T *b;
+    jsize n;
+    jsize i;
+    jlong *pointers;
+    jlong *numbers;
+    jobject jstr;
+    char_u *strings[JAVA_INFO_STRINGS];
+    int j;
+
+    n = (*_env)->GetArrayLength(_env, jpointers);
+    pointers = (*_env)->GetLongArrayElements(_env, jpointers, NULL);
+    if (pointers == NULL)
+	return;
+    numbers = (*_env)->GetLongArrayElements(_env, jnumbers, NULL);
+    if (numbers == NULL)
+    {
+	(*_env)->ReleaseLongArrayElements(_env, jpointers, pointers, JNI_ABORT);
+	return;
+    }
+
+    for (i = 0; i < n; ++i)
+    {
+	b = (buf_T *)pointers[i];
+
+	strings[0] = b->b_sfname;
+	strings[1] = b->b_ffname;
+	strings[2] = b->b_p_ft;
+	for (j = 0; j < JAVA_INFO_STRINGS; ++j)
+	{
+	    if (strings[j] == NULL)
+		continue;
+	    jstr = to_jstring2(_env, strings[j]);
+	    if (jstr == NULL)
+		break;
+	    (*_env)->SetObjectArrayElement(_env, jstrings,
+					   i * JAVA_INFO_STRINGS + j, jstr);
+	    (*_env)->DeleteLocalRef(_env, jstr);
+	}
+	if ((*_env)->ExceptionCheck(_env))
+	    break;
+
+	numbers[i * JAVA_INFO_NUMBERS] = b->b_fnum;
+	numbers[i * JAVA_INFO_NUMBERS + 1] = b->b_ml.ml_line_count;
+	numbers[i * JAVA_INFO_NUMBERS + 2] = CHANGEDTICK(b);
+	numbers[i * JAVA_INFO_NUMBERS + 3] = bufIsChanged(b);
+	numbers[i * JAVA_INFO_NUMBERS + 4] = b->b_ml.ml_mfp != NULL;
+	numbers[i * JAVA_INFO_NUMBERS + 5] = b->b_p_bl;
+    }
+
+    (*_env)->ReleaseLongArrayElements(_env, jnumbers, numbers, 0);
+    (*_env)->ReleaseLongArrayElements(_env, jpointers, pointers, JNI_ABORT);
+}
+
+    JNIEXPORT void JNICALL
+Java_vim_Buffer__1setListening(JNIEnv *_env, jclass jcls, jlong pointer,
+			       jboolean listening)
+{
+    buf_T *b;
+
+    b = (buf_T *)pointer;
+    b->b_java_listen = listening ? TRUE : FALSE;
+    if (!b->b_java_listen)
+	b->b_java_change_lnum = 0;
+}
+
     JNIEXPORT jobject JNICALL
 Java_vim_Buffer__1next(JNIEnv *_env, jclass jcls, jlong pointer)
 {
@@ -1439,13 +2085,19 @@ static JNINativeMethod Vim_methods[] =
     /* name, signature, function pointer */
     {"_msg",     "(Ljava/lang/String;)V",		   Java_vim_Vim__1msg},
     {"_emsg",    "(Ljava/lang/String;)V",		   Java_vim_Vim__1emsg},
+    {"_msgLines", "(Ljava/lang/String;Z)V",		   Java_vim_Vim__1msgLines},
     {"_eval",    "(Ljava/lang/String;)Ljava/lang/Object;", Java_vim_Vim__1eval},
     {"_command", "(Ljava/lang/String;)V",		   Java_vim_Vim__1command},
     {"_beep",    "()V",					   Java_vim_Vim__1beep},
     {"_buffer",  "(Ljava/lang/String;)Lvim/Buffer;",	   Java_vim_Vim__1buffer},
     {"_window",  "(Ljava/lang/String;)Lvim/Window;",	   Java_vim_Vim__1window},
+    {"_buffers", "(I)[Lvim/Buffer;",			   Java_vim_Vim__1buffers},
+    {"_windows", "(Z)[Lvim/Window;",			   Java_vim_Vim__1windows},
     {"_line",    "()Ljava/lang/String;",		   Java_vim_Vim__1line},
-    {"_open",    "(Ljava/lang/String;)Lvim/Buffer;",	   Java_vim_Vim__1open}
+    {"_open",    "(Ljava/lang/String;)Lvim/Buffer;",	   Java_vim_Vim__1open},
+    {"_openWithLines", "(Ljava/lang/String;[BIZZLjava/lang/String;)Lvim/Buffer;", Java_vim_Vim__1openWithLines},
+    {"_wakeVim", "()V",					   Java_vim_Vim__1wakeVim},
+    {"_checkInterrupt", "()Z",				   Java_vim_Vim__1checkInterrupt}
 };
 
 static JNINativeMethod List_methods[] =
@@ -1489,11 +2141,17 @@ static JNINativeMethod Buffer_methods[] =
     {"_getNumLines", "(J)I",			Java_vim_Buffer__1getNumLines},
     {"_getLine",     "(JI)Ljava/lang/String;",	Java_vim_Buffer__1getLine},
     {"_getLines",    "(JII)[Ljava/lang/String;",Java_vim_Buffer__1getLines},
+    {"_readLines",   "(JIILjava/nio/ByteBuffer;II)I", Java_vim_Buffer__1readLines},
+    {"_exportLines", "(JIILjava/nio/ByteBuffer;II)J", Java_vim_Buffer__1exportLines},
     {"_setLine",     "(JILjava/lang/String;)V",	Java_vim_Buffer__1setLine},
     {"_getName",     "(J)Ljava/lang/String;",   Java_vim_Buffer__1getName},
     {"_getFullName", "(J)Ljava/lang/String;",   Java_vim_Buffer__1getFullName},
     {"getNumber",    "(J)I",			Java_vim_Buffer_getNumber},
     {"_insertLine",  "(JLjava/lang/String;I)V",	Java_vim_Buffer__1insertLine},
+    {"_replaceLines", "(JII[Ljava/lang/String;)V", Java_vim_Buffer__1replaceLines},
+    {"_setListening", "(JZ)V",			Java_vim_Buffer__1setListening},
+    {"_getChangedTick", "(J)J",			Java_vim_Buffer__1getChangedTick},
+    {"_getInfo",     "([J[Ljava/lang/String;[J)V", Java_vim_Buffer__1getInfo},
     {"_next",	     "(J)Lvim/Buffer;",		Java_vim_Buffer__1next},
     {"_previous",    "(J)Lvim/Buffer;",		Java_vim_Buffer__1previous}
 };
@@ -1702,6 +2360,19 @@ java_init(void)
 	return FAIL;
     }
 
+#ifdef UNIX
+    if (pipe(java_wakeup_pipe) == 0)
+    {
+	fcntl(java_wakeup_pipe[0], F_SETFL, O_NONBLOCK);
+	fcntl(java_wakeup_pipe[1], F_SETFL, O_NONBLOCK);
+    }
+    else
+    {
+	java_wakeup_pipe[0] = -1;
+	java_wakeup_pipe[1] = -1;
+    }
+#endif
+
     return OK;
 }
 
@@ -1730,6 +2401,15 @@ java_end(void)
 	/*(*jvm)->DestroyJavaVM(jvm);*/
 	jvm = NULL;
 	env = NULL;
+#ifdef UNIX
+	if (java_wakeup_pipe[0] >= 0)
+	{
+	    close(java_wakeup_pipe[0]);
+	    close(java_wakeup_pipe[1]);
+	    java_wakeup_pipe[0] = -1;
+	    java_wakeup_pipe[1] = -1;
+	}
+#endif
 #ifdef DYNAMIC_JAVA
 	end_dynamic_java();
 #endif
@@ -1834,6 +2514,29 @@ ex_javarepl(exarg_T *eap)
     javaV_PopLocalFrame;
 }
 
+/*
+ * ":javastats": show call counts and timings of the Java interface.
+ * ":javastats!" also clears them.
+ */
+    void
+ex_javastats(exarg_T *eap)
+{
+    jclass cls;
+    jmethodID mid;
+
+    if (java_init() == FAIL)
+	return;
+
+    javaV_PushLocalFrame(16);
+
+    cls = (*env)->FindClass(env, JVM_VIM_CLASS_NAME);
+    mid = (*env)->GetStaticMethodID(env, cls, "ex_javastats", "(Z)V");
+    (*env)->CallStaticVoidMethod(env, cls, mid,
+	    eap->forceit ? JNI_TRUE : JNI_FALSE);
+
+    javaV_PopLocalFrame;
+}
+
     void
 java_buffer_free(buf_T *buf)
 {
@@ -1843,6 +2546,9 @@ java_buffer_free(buf_T *buf)
     if (!java_isopen())
 	return;
 
+    buf->b_java_listen = FALSE;
+    buf->b_java_change_lnum = 0;
+
     cls = (*env)->FindClass(env, JVM_VIM_CLASS_NAME);
     mid = (*env)->GetStaticMethodID(env, cls, "markBufferInvalid", "(I)V");
     (*env)->CallStaticVoidMethod(env, cls, mid, buf->b_fnum);
@@ -1932,4 +2638,140 @@ java_dict_purge(dict_T *d)
     (*env)->CallStaticVoidMethod(env, cls, mid, (jlong)d);
 }
 
+/*
+ * Returns the file descriptor that becomes readable when a background Java
+ * thread has queued an operation, or -1 when there is none.
+ *
+ * The input loop waits on this along with the terminal.
+ */
+    int
+java_wakeup_fd(void)
+{
+#ifdef UNIX
+    if (java_isopen())
+	return java_wakeup_pipe[0];
+#endif
+    return -1;
+}
+
+/*
+ * Called from changed_common() for a buffer that Java listens to, with the
+ * arguments of changed_lines().
+ *
+ * Changes are merged per buffer until java_flush_changes() passes them on,
+ * into the smallest range that covers all of them, in the line numbers from
+ * before the first change.
+ */
+    void
+java_record_change(buf_T *buf, linenr_T lnum, linenr_T lnume, long xtra)
+{
+    linenr_T first;
+    linenr_T end;
+    linenr_T new_end;
+
+    if (buf->b_java_change_lnum == 0)
+    {
+	buf->b_java_change_lnum = lnum;
+	buf->b_java_change_lnume = lnume;
+	buf->b_java_change_xtra = xtra;
+	java_changes_pending = TRUE;
+	return;
+    }
+
+    /* map the new change back to the old line numbers: lines above the
+     * recorded range are unchanged, lines below it moved by its xtra, and
+     * lines within it extend the range to its edges */
+    first = buf->b_java_change_lnum;
+    end = buf->b_java_change_lnume;
+    new_end = end + (linenr_T)buf->b_java_change_xtra;
+
+    if (lnum >= new_end)
+	lnum -= (linenr_T)buf->b_java_change_xtra;
+    else if (lnum > first)
+	lnum = first;
+    if (lnume >= new_end)
+	lnume -= (linenr_T)buf->b_java_change_xtra;
+    else if (lnume > first)
+	lnume = end;
+
+    if (lnum < first)
+	buf->b_java_change_lnum = lnum;
+    if (lnume > end)
+	buf->b_java_change_lnume = lnume;
+    buf->b_java_change_xtra += xtra;
+}
+
+/*
+ * Passes the recorded changes of every buffer to the Java listeners, one
+ * event per buffer.
+ */
+    static void
+java_flush_changes(void)
+{
+    buf_T *buf;
+    jclass cls;
+    jmethodID mid;
+    linenr_T lnum;
+    linenr_T lnume;
+    long xtra;
+
+    java_changes_pending = FALSE;
+
+    cls = (*env)->FindClass(env, JVM_VIM_CLASS_NAME);
+    mid = (*env)->GetStaticMethodID(env, cls, "bufferChanged", "(IIIIJ)V");
+
+    FOR_ALL_BUFFERS(buf)
+    {
+	if (buf->b_java_change_lnum == 0)
+	    continue;
+	/* clear the record before calling Java: a listener may change this or
+	 * another buffer, and those changes are recorded afresh and passed on
+	 * by the next flush */
+	lnum = buf->b_java_change_lnum;
+	lnume = buf->b_java_change_lnume;
+	xtra = buf->b_java_change_xtra;
+	buf->b_java_change_lnum = 0;
+	(*env)->CallStaticVoidMethod(env, cls, mid, buf->b_fnum,
+		(jint)lnum, (jint)lnume, (jint)xtra, (jlong)CHANGEDTICK(buf));
+    }
+}
+
+/*
+ * Performs the operations queued by background Java threads.
+ *
+ * Called from parse_queued_messages(), so that Java threads are serviced
+ * while Vim is idle and not only while a ":java" command is running.
+ */
+    void
+java_parse_pending_operations(void)
+{
+    jclass cls;
+    jmethodID mid;
+#ifdef UNIX
+    char buf[64];
+#endif
+
+    if (!java_isopen())
+	return;
+
+#ifdef UNIX
+    /* empty the pipe before looking at the queue, any operation queued after
+     * this writes to the pipe again */
+    if (java_wakeup_pipe[0] >= 0)
+	while (read(java_wakeup_pipe[0], buf, sizeof(buf)) > 0)
+	    ;
+#endif
+
+    javaV_PushLocalFrame(16);
+
+    if (java_changes_pending)
+	java_flush_changes();
+
+    cls = (*env)->FindClass(env, JVM_VIM_CLASS_NAME);
+    mid = (*env)->GetStaticMethodID(env, cls, "processPendingOperations", "()V");
+    (*env)->CallStaticVoidMethod(env, cls, mid);
+
+    javaV_PopLocalFrame;
+}
+
 #endif /* defined(FEAT_JAVA) || defined(PROTO) */
@@ -0,0 +1,28 @@
+" allocation of the hot cross-thread calls, with Clojure
+" Uses buffer 1 and the current window. Each line reports the bytes the
+" calling thread allocates per call, as counted by
+" com.sun.management.ThreadMXBean, and the number of collections that ran
+" while it was measured. Clojure evaluates on its REPL thread, so every call
+" below is handed to the main thread through its operation slot. Expect close
+" to 0 bytes per call on a HotSpot JVM, apart from returned Strings and
+" proxies.
+:let g:alloc_list = [1, 2, 3]
+:let g:alloc_dict = {'key': 'value'}
+:java (import '(java.lang.management ManagementFactory))
+:java (def buf ^vim.Buffer (Vim/buffer "1"))
+:java (def win ^vim.Window (Vim/window "false"))
+:java (def lst ^vim.List (Vim/eval "g:alloc_list"))
+:java (def dct ^vim.Dict (Vim/eval "g:alloc_dict"))
+:java (defn gc-count [] (reduce + (map #(.getCollectionCount ^java.lang.management.GarbageCollectorMXBean %) (ManagementFactory/getGarbageCollectorMXBeans))))
+:java (defn allocated [] (.getThreadAllocatedBytes ^com.sun.management.ThreadMXBean (ManagementFactory/getThreadMXBean) (.getId (Thread/currentThread))))
+:java (defn alloc-per-call [n f] (dotimes [_ n] (f)) (let [gc (gc-count) before (allocated)] (dotimes [_ n] (f)) (let [bytes (- (allocated) before)] (format "%.1f bytes/call, %d GCs" (double (/ bytes n)) (- (gc-count) gc)))))
+
+:java (Vim/msg (str "Buffer.getNumLines: " (alloc-per-call 100000 #(.getNumLines ^vim.Buffer buf))))
+:java (Vim/msg (str "Buffer.getLine: " (alloc-per-call 100000 #(.getLine ^vim.Buffer buf 1))))
+:java (Vim/msg (str "Buffer.setLine: " (alloc-per-call 10000 #(.setLine ^vim.Buffer buf 1 (.getLine ^vim.Buffer buf 1)))))
+:java (Vim/msg (str "Window.getLinePos: " (alloc-per-call 100000 #(.getLinePos ^vim.Window win))))
+:java (Vim/msg (str "Window.getColPos: " (alloc-per-call 100000 #(.getColPos ^vim.Window win))))
+:java (Vim/msg (str "List.size: " (alloc-per-call 100000 #(.size ^vim.List lst))))
+:java (Vim/msg (str "List.get: " (alloc-per-call 100000 #(.get ^vim.List lst (int 0)))))
+:java (Vim/msg (str "Dict.size: " (alloc-per-call 100000 #(.size ^vim.Dict dct))))
+:java (Vim/msg (str "Dict.get: " (alloc-per-call 100000 #(.get ^vim.Dict dct "key"))))
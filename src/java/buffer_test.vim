@@ -13,3 +13,9 @@
 :java (Vim/msg (.next (Vim/buffer "2")))
 :java (Vim/msg (.previous (Vim/buffer "2")))
 :java (Vim/msg (.isValid (Vim/buffer "2")))
+" a listener that edits its own buffer is told about that edit as well:
+" after the editor has been idle, edits holds two changes
+:java (def edits (atom []))
+:java (.addChangeListener (Vim/buffer "2") (reify vim.Buffer$ChangeListener (bufferChanged [_ change] (swap! edits conj (str change)) (when (= 1 (count @edits)) (.insertLine (.getBuffer change) "\" from listener")))))
+:java (.setLine (Vim/buffer "2") 1 "changed")
+:java (Vim/msg @edits)
@@ -0,0 +1,17 @@
+" round-trip latency of operations and CPU use of the waiting main thread,
+" with Clojure
+" Uses buffer 1. Clojure evaluates on its REPL thread while the main thread
+" waits for it, so each call below is one round trip through the operation
+" queue. The last line sleeps on the REPL thread and reports how much CPU
+" time the main thread and the whole process used meanwhile, which should be
+" close to 0 ms while the main thread is parked.
+:java (import '(java.lang.management ManagementFactory))
+:java (def buf ^vim.Buffer (Vim/buffer "1"))
+:java (defn percentile [^longs sorted p] (aget sorted (min (dec (alength sorted)) (long (* p (alength sorted))))))
+:java (defn round-trips [n] (dotimes [_ n] (.getNumLines ^vim.Buffer buf)) (let [t (long-array n)] (dotimes [i n] (let [start (System/nanoTime)] (.getNumLines ^vim.Buffer buf) (aset t i (- (System/nanoTime) start)))) (java.util.Arrays/sort t) (format "p50 %d ns, p99 %d ns, p99.9 %d ns, max %d ns" (percentile t 0.5) (percentile t 0.99) (percentile t 0.999) (aget t (dec n)))))
+:java (defn main-cpu [] (.getThreadCpuTime (ManagementFactory/getThreadMXBean) (Vim/getMainThreadId)))
+:java (defn process-cpu [] (.getProcessCpuTime ^com.sun.management.OperatingSystemMXBean (ManagementFactory/getOperatingSystemMXBean)))
+:java (defn idle-cpu [millis] (let [main (main-cpu) process (process-cpu)] (Thread/sleep millis) (format "%d ms asleep: main thread %.1f ms CPU, process %.1f ms CPU" millis (/ (- (main-cpu) main) 1e6) (/ (- (process-cpu) process) 1e6))))
+
+:java (Vim/msg (str "Buffer.getNumLines round trip: " (round-trips 100000)))
+:java (Vim/msg (idle-cpu 5000))
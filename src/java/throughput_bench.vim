@@ -0,0 +1,13 @@
+" throughput of the operation queue with 1, 4 and 16 producer threads, with
+" Clojure
+" Uses buffer 1. Each producer is a future that hands Buffer.getNumLines()
+" calls to the main thread, which drains the queue while it waits for the
+" REPL thread. The same total number of operations is split among the
+" producers, so the lines can be compared directly.
+:java (def buf ^vim.Buffer (Vim/buffer "1"))
+:java (defn throughput [producers total] (let [per-thread (quot total producers) start (System/nanoTime) fs (doall (repeatedly producers #(future (dotimes [_ per-thread] (.getNumLines ^vim.Buffer buf)))))] (doseq [f fs] @f) (format "%2d producers: %.0f operations/s" producers (/ (* producers per-thread) (/ (- (System/nanoTime) start) 1e9)))))
+:java (throughput 4 100000)
+
+:java (Vim/msg (throughput 1 320000))
+:java (Vim/msg (throughput 4 320000))
+:java (Vim/msg (throughput 16 320000))
@@ -1,7 +1,23 @@
 package vim;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 public class Buffer {
     /**
@@ -29,6 +45,13 @@ public class Buffer {
         }
     }
 
+    /**
+     * Receives the changes made to a buffer, see addChangeListener().
+     */
+    public interface ChangeListener {
+        void bufferChanged(BufferChange change);
+    }
+
     ////////////////////////////////////////////////////////////////////////////
 
     private static Map<Integer, Buffer> buffers;
@@ -37,9 +60,24 @@ public class Buffer {
         buffers = new HashMap<Integer, Buffer>();
     }
 
+    /**
+     * The latest snapshot() of recently used buffers, keyed by buffer number.
+     *
+     * Only used on the main thread, apart from setSnapshotCacheLimit().
+     */
+    private static final ByteLruCache<Integer, BufferSnapshot> snapshots =
+        new ByteLruCache<Integer, BufferSnapshot>(
+                64L * 1024 * 1024, BufferSnapshot::getByteSize);
+
     private long vimBufferPointer;
     private int bufferNumber;
     private boolean isValid;
+    private final CopyOnWriteArrayList<ChangeListener> changeListeners =
+        new CopyOnWriteArrayList<ChangeListener>();
+    /**
+     * Only used on the main thread.
+     */
+    private BufferMirror mirror;
 
     /**
      * Returns the appropriate Java Buffer object associated with the Vim
@@ -55,6 +93,7 @@ public class Buffer {
             return buffers.get(bufferId);
         }
 
+        Events.proxyCacheMiss("Buffer", bufferPointer, false, 0);
         Buffer buffer = new Buffer(bufferPointer);
         if (buffer.getNumber() != bufferId ||
                 buffer.vimBufferPointer != bufferPointer)
@@ -78,6 +117,33 @@ public class Buffer {
         Buffer buffer = buffers.get(bufferId);
         buffer.isValid = false;
         buffers.put(bufferId, null);
+
+        snapshots.remove(bufferId);
+    }
+
+    /**
+     * Tells the change listeners of the buffer with buffer ID number about a
+     * batch of changes.
+     *
+     * Called by Vim on the C side, at most once per buffer per main loop
+     * iteration.
+     */
+    static void fireChange(int bufferId, int firstLine, int endLine,
+            int addedLines, long changedTick)
+    {
+        Buffer buffer = buffers.get(bufferId);
+        if (buffer == null || buffer.changeListeners.isEmpty())
+            return;
+
+        BufferChange change = new BufferChange(
+                buffer, firstLine, endLine, addedLines, changedTick);
+        for (ChangeListener listener : buffer.changeListeners) {
+            try {
+                listener.bufferChanged(change);
+            } catch (Exception e) {
+                Vim.emsg(e.toString());
+            }
+        }
     }
 
     /**
@@ -110,9 +176,13 @@ public class Buffer {
     private void _setAsCurrent() throws Exception {
         if (!isValid)
             throw new FreedBufferException("setAsCurrent()");
+        long start = System.nanoTime();
         vim.Buffer._setAsCurrent(vimBufferPointer);
+        setAsCurrentStats.record(start);
     }
     private native static void _setAsCurrent(long pointer);
+    private static final Stats.Metric setAsCurrentStats =
+        Stats.nativeMethod("Buffer._setAsCurrent");
 
     /**
      * Gets the number of lines in the buffer.
@@ -121,18 +191,27 @@ public class Buffer {
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             return _getNumLines();
         } else {
-            GetNumLinesOperation op =
-                new GetNumLinesOperation(this);
-            op.waitUntilDone();
-            return op.ret;
+            GetNumLinesOperation op = GetNumLinesOperation.slot.get();
+            op.buffer = this;
+            try {
+                op.waitUntilDone();
+                return op.ret;
+            } finally {
+                op.clear();
+            }
         }
     }
     private int _getNumLines() throws Exception {
         if (!isValid)
             throw new FreedBufferException("getNumLines()");
-        return vim.Buffer._getNumLines(vimBufferPointer);
+        long start = System.nanoTime();
+        int ret = vim.Buffer._getNumLines(vimBufferPointer);
+        getNumLinesStats.record(start);
+        return ret;
     }
     private native static int _getNumLines(long pointer);
+    private static final Stats.Metric getNumLinesStats =
+        Stats.nativeMethod("Buffer._getNumLines");
 
     /**
      * Returns the line at lineNumber in the buffer.
@@ -141,19 +220,37 @@ public class Buffer {
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             return _getLine(lineNumber);
         } else {
-            GetLineOperation op =
-                new GetLineOperation(this, lineNumber);
-            op.waitUntilDone();
-            return op.ret;
+            GetLineOperation op = GetLineOperation.slot.get();
+            op.buffer = this;
+            op.lineNumber = lineNumber;
+            try {
+                op.waitUntilDone();
+                return op.ret;
+            } finally {
+                op.clear();
+            }
         }
     }
     private String _getLine(int lineNumber) throws Exception {
         if (!isValid)
             throw new FreedBufferException("getLine()");
-        return vim.Buffer._getLine(vimBufferPointer, lineNumber);
+        long start = System.nanoTime();
+        String ret = vim.Buffer._getLine(vimBufferPointer, lineNumber);
+        getLineStats.record(start);
+        return ret;
     }
     private native static String _getLine(long pointer, int lineNumber);
+    private static final Stats.Metric getLineStats =
+        Stats.nativeMethod("Buffer._getLine");
 
+    /**
+     * Returns the lines from startLineNumber to endLineNumber, inclusive, as
+     * an array of endLineNumber - startLineNumber + 1 lines, or null if the
+     * range is not within the buffer.
+     *
+     * Before lines() was added, the array was as long as the whole buffer,
+     * with the requested lines at their own index and null everywhere else.
+     */
     public String[] getLines(int startLineNumber, int endLineNumber) throws Exception {
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             return _getLines(startLineNumber, endLineNumber);
@@ -167,10 +264,67 @@ public class Buffer {
     private String[] _getLines(int startLineNumber, int endLineNumber) throws Exception {
         if (!isValid)
             throw new FreedBufferException("getLines()");
-        return vim.Buffer._getLines(vimBufferPointer, startLineNumber, endLineNumber);
+        long start = System.nanoTime();
+        String[] ret = vim.Buffer._getLines(vimBufferPointer, startLineNumber, endLineNumber);
+        getLinesStats.record(start);
+        return ret;
     }
     private native static String[] _getLines(
             long pointer, int startLineNumber, int endLineNumber);
+    private static final Stats.Metric getLinesStats =
+        Stats.nativeMethod("Buffer._getLines");
+
+    /**
+     * Returns the lines from startLineNumber to endLineNumber, inclusive, to
+     * be read a chunk of 4096 lines at a time, see BufferLines.
+     *
+     * endLineNumber may be past the end of the buffer, in which case the
+     * lines are read up to the end of the buffer.
+     */
+    public BufferLines lines(int startLineNumber, int endLineNumber) {
+        return lines(startLineNumber, endLineNumber, DEFAULT_CHUNK_SIZE);
+    }
+    public BufferLines lines(int startLineNumber, int endLineNumber, int chunkSize) {
+        return new BufferLines(this, startLineNumber, endLineNumber, chunkSize);
+    }
+    /**
+     * Returns all lines of the buffer, to be read a chunk at a time.
+     */
+    public BufferLines lines() {
+        return lines(1, Integer.MAX_VALUE, DEFAULT_CHUNK_SIZE);
+    }
+    private static final int DEFAULT_CHUNK_SIZE = 4096;
+    /**
+     * Requests lines for BufferLines, in the BULK lane. The range is cut
+     * short at the end of the buffer, and an empty array is returned if it
+     * starts past it.
+     */
+    CompletableFuture<String[]> getLineChunkAsync(int startLineNumber, int endLineNumber) {
+        final GetLineChunkOperation op =
+            new GetLineChunkOperation(this, startLineNumber, endLineNumber);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+    private String[] _getLineChunk(int startLineNumber, int endLineNumber) throws Exception {
+        int last = Math.min(endLineNumber, _getNumLines());
+        if (startLineNumber > last)
+            return new String[0];
+        return _getLines(startLineNumber, last);
+    }
+
+    /**
+     * Returns a BufferPager over this buffer that fetches pages of 1024
+     * lines and caches up to 16 MiB of them.
+     */
+    public BufferPager pager() throws Exception {
+        return pager(1024, 16L * 1024 * 1024);
+    }
+    /**
+     * Returns a BufferPager over this buffer that fetches pages of pageSize
+     * lines and caches up to roughly maxBytes of them.
+     */
+    public BufferPager pager(int pageSize, long maxBytes) throws Exception {
+        return new BufferPager(this, pageSize, maxBytes);
+    }
 
     /**
      * Returns a String array of all lines in the buffer.
@@ -179,6 +333,233 @@ public class Buffer {
         return this.getLines(1, this.getNumLines());
     }
 
+    /**
+     * Copies the raw bytes of the lines from startLineNumber to
+     * endLineNumber into a direct ByteBuffer, without creating a String per
+     * line, and returns a view of them.
+     *
+     * The lines are written from the ByteBuffer's position up to its limit,
+     * which are left unchanged. Only whole lines are copied, as many as fit,
+     * so check RawLines.size() and read the rest with another call. If not
+     * even one line fits, the returned RawLines is empty.
+     *
+     * The CharSequence views of the lines decode non-ASCII lines as UTF-8.
+     */
+    public RawLines readLines(int startLineNumber, int endLineNumber,
+            ByteBuffer buffer) throws Exception {
+        return readLines(startLineNumber, endLineNumber, buffer,
+                StandardCharsets.UTF_8);
+    }
+    /**
+     * Like readLines(int, int, ByteBuffer), but decodes non-ASCII lines with
+     * the given charset, which should match Vim's 'encoding'.
+     */
+    public RawLines readLines(int startLineNumber, int endLineNumber,
+            ByteBuffer buffer, Charset charset) throws Exception {
+        checkReadLinesBuffer(buffer);
+
+        int numLines;
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            numLines = _readLines(startLineNumber, endLineNumber, buffer);
+        } else {
+            ReadLinesOperation op =
+                new ReadLinesOperation(this, startLineNumber, endLineNumber, buffer);
+            op.waitUntilDone();
+            numLines = op.ret;
+        }
+        return new RawLines(buffer, charset, startLineNumber, numLines);
+    }
+    private static void checkReadLinesBuffer(ByteBuffer buffer) {
+        if (!buffer.isDirect())
+            throw new IllegalArgumentException("Buffer.readLines() needs a direct ByteBuffer");
+        if (buffer.isReadOnly())
+            throw new IllegalArgumentException("Buffer.readLines() needs a writable ByteBuffer");
+    }
+    private int _readLines(int startLineNumber, int endLineNumber,
+            ByteBuffer buffer) throws Exception {
+        if (!isValid)
+            throw new FreedBufferException("readLines()");
+        long start = System.nanoTime();
+        int ret = vim.Buffer._readLines(vimBufferPointer, startLineNumber,
+                endLineNumber, buffer, buffer.position(), buffer.limit());
+        readLinesStats.record(start);
+        if (ret < 0)
+            throw new IndexOutOfBoundsException("Buffer.readLines()");
+        return ret;
+    }
+    private native static int _readLines(long pointer, int startLineNumber,
+            int endLineNumber, ByteBuffer buffer, int position, int limit);
+    private static final Stats.Metric readLinesStats =
+        Stats.nativeMethod("Buffer._readLines");
+
+    /**
+     * Writes the lines of the buffer to path the way :write would, with the
+     * line breaks of 'fileformat' and 'endofline', but in Vim's 'encoding'
+     * and without autocommands, backups or changing the buffer's name or
+     * 'modified'. Returns the number of bytes written.
+     *
+     * The bytes are copied into direct ByteBuffers in a single trip to the
+     * main thread, and written out with a gathering write afterwards. On the
+     * main thread use exportToAsync(), so the write happens in the
+     * background.
+     */
+    public long exportTo(Path path) throws Exception {
+        return writeExport(path, captureExport());
+    }
+    private java.util.List<ByteBuffer> captureExport() throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            return _captureExport();
+        } else {
+            CaptureExportOperation op = new CaptureExportOperation(this);
+            op.waitUntilDone();
+            return op.ret;
+        }
+    }
+    private java.util.List<ByteBuffer> _captureExport() throws Exception {
+        java.util.List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+        int numLines = _getNumLines();
+        int lineNumber = 1;
+        int chunkSize = EXPORT_CHUNK_SIZE;
+        while (lineNumber <= numLines) {
+            ByteBuffer chunk = ByteBuffer.allocateDirect(chunkSize);
+            long packed = _exportLines(lineNumber, numLines, chunk);
+            int copied = (int) (packed >>> 32);
+            if (copied == 0) {
+                // a single line longer than a chunk
+                chunkSize *= 2;
+                continue;
+            }
+            chunk.limit((int) packed);
+            chunks.add(chunk);
+            lineNumber += copied;
+        }
+        return chunks;
+    }
+    private static long writeExport(Path path, java.util.List<ByteBuffer> chunks)
+        throws IOException
+    {
+        ByteBuffer[] buffers = chunks.toArray(new ByteBuffer[chunks.size()]);
+        long written = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            int first = 0;
+            while (first < buffers.length) {
+                written += channel.write(buffers, first, buffers.length - first);
+                while (first < buffers.length && !buffers[first].hasRemaining())
+                    ++first;
+            }
+        }
+        return written;
+    }
+    private long _exportLines(int startLineNumber, int endLineNumber,
+            ByteBuffer buffer) throws Exception {
+        if (!isValid)
+            throw new FreedBufferException("exportTo()");
+        long start = System.nanoTime();
+        long ret = vim.Buffer._exportLines(vimBufferPointer, startLineNumber,
+                endLineNumber, buffer, buffer.position(), buffer.limit());
+        exportLinesStats.record(start);
+        if (ret < 0)
+            throw new IndexOutOfBoundsException("Buffer.exportTo()");
+        return ret;
+    }
+    /**
+     * Returns the number of lines copied in the upper 32 bits and the number
+     * of bytes in the lower 32 bits.
+     */
+    private native static long _exportLines(long pointer, int startLineNumber,
+            int endLineNumber, ByteBuffer buffer, int position, int limit);
+    private static final Stats.Metric exportLinesStats =
+        Stats.nativeMethod("Buffer._exportLines");
+    private static final int EXPORT_CHUNK_SIZE = 1024 * 1024;
+
+    /**
+     * Returns b:changedtick of the buffer, which Vim increments on every
+     * change.
+     */
+    public long getChangedTick() throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            return _getChangedTick();
+        } else {
+            GetChangedTickOperation op = new GetChangedTickOperation(this);
+            op.waitUntilDone();
+            return op.ret;
+        }
+    }
+    private long _getChangedTick() throws Exception {
+        if (!isValid)
+            throw new FreedBufferException("getChangedTick()");
+        long start = System.nanoTime();
+        long ret = vim.Buffer._getChangedTick(vimBufferPointer);
+        getChangedTickStats.record(start);
+        return ret;
+    }
+    private native static long _getChangedTick(long pointer);
+    private static final Stats.Metric getChangedTickStats =
+        Stats.nativeMethod("Buffer._getChangedTick");
+
+    /**
+     * Returns all lines of the buffer as an immutable snapshot.
+     *
+     * The snapshot is cached, and returned again for as long as
+     * b:changedtick has not moved, so several plugins asking for the lines
+     * of the same unchanged buffer share one copy and only pay for a
+     * changedtick check. Snapshots of the least recently used buffers are
+     * dropped once the cache grows past setSnapshotCacheLimit().
+     */
+    public BufferSnapshot snapshot() throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            return _snapshot();
+        } else {
+            SnapshotOperation op = new SnapshotOperation(this);
+            op.waitUntilDone();
+            return op.ret;
+        }
+    }
+    private BufferSnapshot _snapshot() throws Exception {
+        long changedTick = _getChangedTick();
+        BufferSnapshot cached = snapshots.get(bufferNumber);
+        if (cached != null && cached.getChangedTick() == changedTick)
+            return cached;
+
+        BufferSnapshot snapshot = new BufferSnapshot(
+                this, changedTick, _getLines(1, _getNumLines()));
+        snapshots.put(bufferNumber, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Sets roughly how many bytes the snapshots cached by snapshot() may take
+     * up altogether. Defaults to 64 MiB.
+     */
+    public static void setSnapshotCacheLimit(long bytes) {
+        snapshots.setMaxBytes(bytes);
+    }
+
+    /**
+     * Returns every match of pattern in the buffer, in line order.
+     *
+     * The lines are taken from snapshot(), so only that step waits for the
+     * main thread. The search itself is split into chunks of lines that are
+     * matched in parallel on the common ForkJoinPool. Matches never span
+     * lines.
+     */
+    public java.util.List<SearchMatch> search(Pattern pattern) throws Exception {
+        return Search.search(snapshot(), pattern, null);
+    }
+    /**
+     * Like search(Pattern), but also passes each match to onMatch as soon as
+     * the chunk of lines it is in has been searched, for example to start
+     * highlighting before the whole buffer is done.
+     *
+     * onMatch is called from the worker threads of the ForkJoinPool, for
+     * several chunks at once and in no particular order between chunks.
+     */
+    public java.util.List<SearchMatch> search(Pattern pattern,
+            Consumer<? super SearchMatch> onMatch) throws Exception {
+        return Search.search(snapshot(), pattern, onMatch);
+    }
+
     /**
      * If newLine is null, the line is deleted.
      */
@@ -186,17 +567,27 @@ public class Buffer {
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             _setLine(lineNumber, newLine);
         } else {
-            SetLineOperation op =
-                new SetLineOperation(this, lineNumber, newLine);
-            op.waitUntilDone();
+            SetLineOperation op = SetLineOperation.slot.get();
+            op.buffer = this;
+            op.lineNumber = lineNumber;
+            op.newLine = newLine;
+            try {
+                op.waitUntilDone();
+            } finally {
+                op.clear();
+            }
         }
     }
     private void _setLine(int lineNumber, String newLine) throws Exception {
         if (!isValid)
             throw new FreedBufferException("setLine()");
+        long start = System.nanoTime();
         vim.Buffer._setLine(vimBufferPointer, lineNumber, newLine);
+        setLineStats.record(start);
     }
     private native static void _setLine(long pointer, int lineNumber, String newLine);
+    private static final Stats.Metric setLineStats =
+        Stats.nativeMethod("Buffer._setLine");
 
     /**
      * Gets the short name of the buffer.
@@ -214,9 +605,14 @@ public class Buffer {
     private String _getName() throws Exception {
         if (!isValid)
             throw new FreedBufferException("getName()");
-        return vim.Buffer._getName(vimBufferPointer);
+        long start = System.nanoTime();
+        String ret = vim.Buffer._getName(vimBufferPointer);
+        getNameStats.record(start);
+        return ret;
     }
     private native static String _getName(long pointer);
+    private static final Stats.Metric getNameStats =
+        Stats.nativeMethod("Buffer._getName");
 
     /**
      * Gets the full name of the buffer.
@@ -234,9 +630,72 @@ public class Buffer {
     private String _getFullName() throws Exception {
         if (!isValid)
             throw new FreedBufferException("getFullName()");
-        return vim.Buffer._getFullName(vimBufferPointer);
+        long start = System.nanoTime();
+        String ret = vim.Buffer._getFullName(vimBufferPointer);
+        getFullNameStats.record(start);
+        return ret;
     }
     private native static String _getFullName(long pointer);
+    private static final Stats.Metric getFullNameStats =
+        Stats.nativeMethod("Buffer._getFullName");
+
+    /**
+     * Returns the name, number, line count, b:changedtick, 'filetype' and
+     * flags of the buffer together, in a single call into Vim.
+     */
+    public BufferInfo info() throws Exception {
+        return infos(new Buffer[] { this })[0];
+    }
+    /**
+     * Returns a BufferInfo for each of buffers, in the same order, all in
+     * a single call into Vim. For example, infos(Vim.buffers()) describes
+     * every buffer at the cost of two calls.
+     */
+    public static BufferInfo[] infos(Buffer[] buffers) throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            return _infos(buffers);
+        } else {
+            InfosOperation op = new InfosOperation(buffers);
+            op.waitUntilDone();
+            return op.ret;
+        }
+    }
+    public static BufferInfo[] infos(java.util.List<Buffer> buffers) throws Exception {
+        return infos(buffers.toArray(new Buffer[buffers.size()]));
+    }
+    private static BufferInfo[] _infos(Buffer[] buffers) throws Exception {
+        long[] pointers = new long[buffers.length];
+        for (int i = 0; i < buffers.length; ++i) {
+            if (!buffers[i].isValid)
+                throw buffers[i].new FreedBufferException("info()");
+            pointers[i] = buffers[i].vimBufferPointer;
+        }
+        String[] strings = new String[buffers.length * INFO_STRINGS];
+        long[] numbers = new long[buffers.length * INFO_NUMBERS];
+        long start = System.nanoTime();
+        vim.Buffer._getInfo(pointers, strings, numbers);
+        getInfoStats.record(start);
+
+        BufferInfo[] ret = new BufferInfo[buffers.length];
+        for (int i = 0; i < buffers.length; ++i) {
+            int s = i * INFO_STRINGS;
+            int n = i * INFO_NUMBERS;
+            ret[i] = new BufferInfo(buffers[i], (int) numbers[n],
+                    strings[s], strings[s + 1], strings[s + 2],
+                    (int) numbers[n + 1], numbers[n + 2],
+                    numbers[n + 3] != 0, numbers[n + 4] != 0, numbers[n + 5] != 0);
+        }
+        return ret;
+    }
+    /**
+     * Entries per buffer in the arrays filled by _getInfo(), see
+     * Java_vim_Buffer__1getInfo() in if_java.c.
+     */
+    private static final int INFO_STRINGS = 3;
+    private static final int INFO_NUMBERS = 6;
+    private native static void _getInfo(long[] pointers, String[] strings, long[] numbers);
+    private static final Stats.Metric getInfoStats =
+        Stats.nativeMethod("Buffer._getInfo");
 
     public int getNumber()
     {
@@ -260,6 +719,322 @@ public class Buffer {
     }
     private native static int getNumber(long pointer);
 
+    /**
+     * Replaces the lines from startLineNumber to endLineNumber with
+     * newLines, which may hold more or fewer lines than the range, or none
+     * to delete it. When endLineNumber is startLineNumber - 1, newLines are
+     * inserted above startLineNumber.
+     *
+     * The whole replacement is a single JNI call and a single undo step,
+     * which makes it much faster than a setLine() per line.
+     */
+    public void replaceRange(int startLineNumber, int endLineNumber,
+            String[] newLines) throws Exception {
+        for (String line : newLines) {
+            if (line == null)
+                throw new NullPointerException("Buffer.replaceRange() null line");
+        }
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            _replaceLines(startLineNumber, endLineNumber, newLines);
+        } else {
+            ReplaceLinesOperation op = new ReplaceLinesOperation(
+                    this, startLineNumber, endLineNumber, newLines);
+            op.waitUntilDone();
+        }
+    }
+    /**
+     * Like replaceRange(int, int, String[]), but takes the new lines as any
+     * kind of CharSequence, like the lines of a RawLines.
+     */
+    public void replaceRange(int startLineNumber, int endLineNumber,
+            java.util.List<? extends CharSequence> newLines) throws Exception {
+        replaceRange(startLineNumber, endLineNumber, toStrings(newLines));
+    }
+    /**
+     * Replaces every line of the buffer with newLines, as a single undo step.
+     */
+    public void setLines(String[] newLines) throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            replaceRange(1, _getNumLines(), newLines);
+        } else {
+            SetLinesOperation op = new SetLinesOperation(this, newLines);
+            op.waitUntilDone();
+        }
+    }
+    /**
+     * Like setLines(String[]), but takes the new lines as any kind of
+     * CharSequence.
+     */
+    public void setLines(java.util.List<? extends CharSequence> newLines) throws Exception {
+        setLines(toStrings(newLines));
+    }
+    private static String[] toStrings(java.util.List<? extends CharSequence> lines) {
+        String[] ret = new String[lines.size()];
+        int i = 0;
+        for (CharSequence line : lines) {
+            ret[i++] = (line != null) ? line.toString() : null;
+        }
+        return ret;
+    }
+    private void _replaceLines(int startLineNumber, int endLineNumber,
+            String[] newLines) throws Exception {
+        if (!isValid)
+            throw new FreedBufferException("replaceRange()");
+        long start = System.nanoTime();
+        vim.Buffer._replaceLines(vimBufferPointer, startLineNumber, endLineNumber, newLines);
+        replaceLinesStats.record(start);
+    }
+    private native static void _replaceLines(long pointer,
+            int startLineNumber, int endLineNumber, String[] newLines);
+    private static final Stats.Metric replaceLinesStats =
+        Stats.nativeMethod("Buffer._replaceLines");
+
+    /**
+     * Applies a batch of edits, like the TextEdits of a language server, as
+     * a single change made on the main thread.
+     *
+     * The edits may come in any order but must not overlap. Their ranges all
+     * refer to the text before any of them is applied. Edits inserting at
+     * the same position are applied in the order given, and before an edit
+     * replacing text that starts there. Edits on the same or neighbouring
+     * lines are merged into one replaceRange(), and those groups are applied
+     * from the bottom of the buffer up so the line numbers of the others
+     * stay valid. Each group is a separate change to Vim, so the unchanged
+     * lines between distant edits are left alone, but the whole batch is one
+     * undo step.
+     *
+     * Nothing is changed if any edit is out of range or overlaps another.
+     */
+    public void applyEdits(java.util.List<TextEdit> edits) throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            _applyEdits(edits);
+        } else {
+            ApplyEditsOperation op = new ApplyEditsOperation(this, edits);
+            op.waitUntilDone();
+        }
+    }
+    private void _applyEdits(java.util.List<TextEdit> edits) throws Exception {
+        if (edits.isEmpty())
+            return;
+        TextEdit[] sorted = edits.toArray(new TextEdit[edits.size()]);
+        // stable, so inserts at the same position keep their order
+        Arrays.sort(sorted, EDIT_ORDER);
+        for (int i = 1; i < sorted.length; ++i) {
+            if (!sorted[i].startsAfter(sorted[i - 1]))
+                throw new IllegalArgumentException("Buffer.applyEdits() overlapping edits: " +
+                        sorted[i - 1] + ", " + sorted[i]);
+        }
+        int numLines = _getNumLines();
+        if (sorted[0].getStartLine() < 1 ||
+                sorted[sorted.length - 1].getEndLine() > numLines)
+            throw new IndexOutOfBoundsException("Buffer.applyEdits() line out of range");
+
+        // split into groups of edits whose lines touch, as [first, end)
+        // indexes into sorted, and build every replacement before changing
+        // anything
+        java.util.List<int[]> groups = new ArrayList<int[]>();
+        int first = 0;
+        for (int i = 1; i <= sorted.length; ++i) {
+            if (i == sorted.length ||
+                    sorted[i].getStartLine() > sorted[i - 1].getEndLine() + 1) {
+                groups.add(new int[] { first, i });
+                first = i;
+            }
+        }
+        String[][] replacements = new String[groups.size()][];
+        for (int g = 0; g < groups.size(); ++g) {
+            int[] group = groups.get(g);
+            replacements[g] = applyEditsToLines(sorted, group[0], group[1]);
+        }
+
+        for (int g = groups.size() - 1; g >= 0; --g) {
+            int[] group = groups.get(g);
+            _replaceLines(sorted[group[0]].getStartLine(),
+                    sorted[group[1] - 1].getEndLine(), replacements[g]);
+        }
+    }
+    /**
+     * Returns the lines from the first line of sorted[first] to the last line
+     * of sorted[end - 1] with those edits applied.
+     */
+    private String[] applyEditsToLines(TextEdit[] sorted, int first, int end)
+        throws Exception
+    {
+        int startLine = sorted[first].getStartLine();
+        String[] lines = _getLines(startLine, sorted[end - 1].getEndLine());
+
+        StringBuilder text = new StringBuilder();
+        int line = startLine;
+        int column = 0;
+        for (int i = first; i < end; ++i) {
+            TextEdit edit = sorted[i];
+            // copy the text between the previous edit and this one
+            for (; line < edit.getStartLine(); ++line, column = 0) {
+                text.append(lines[line - startLine], column,
+                        lines[line - startLine].length()).append('\n');
+            }
+            checkColumn(lines[edit.getStartLine() - startLine], edit.getStartColumn());
+            checkColumn(lines[edit.getEndLine() - startLine], edit.getEndColumn());
+            text.append(lines[line - startLine], column, edit.getStartColumn());
+            text.append(edit.getNewText());
+            line = edit.getEndLine();
+            column = edit.getEndColumn();
+        }
+        String last = lines[line - startLine];
+        text.append(last, column, last.length());
+        return text.toString().split("\n", -1);
+    }
+    private static void checkColumn(String line, int column) {
+        if (column < 0 || column > line.length())
+            throw new IndexOutOfBoundsException("Buffer.applyEdits() column " + column);
+    }
+    private static final Comparator<TextEdit> EDIT_ORDER = new Comparator<TextEdit>() {
+        public int compare(TextEdit a, TextEdit b) {
+            if (a.getStartLine() != b.getStartLine())
+                return Integer.compare(a.getStartLine(), b.getStartLine());
+            if (a.getStartColumn() != b.getStartColumn())
+                return Integer.compare(a.getStartColumn(), b.getStartColumn());
+            // an insert comes before a replacement at the same position, so
+            // that the two never count as overlapping
+            return Boolean.compare(!a.isInsert(), !b.isInsert());
+        }
+    };
+
+    /**
+     * Makes the buffer hold newLines by changing only the lines that differ.
+     *
+     * The current lines are taken from snapshot() and diffed against
+     * newLines on the calling thread, so only taking the snapshot and
+     * applying the result wait for the main thread. Marks, folds and the
+     * cursor on lines that did not change stay where they are, and the
+     * whole replacement is a single undo step.
+     *
+     * Returns false, changing nothing, if the buffer was changed between
+     * taking the snapshot and applying the diff.
+     */
+    public boolean replaceContentsWithDiff(String[] newLines) throws Exception {
+        checkDiffLines(newLines);
+        BufferSnapshot snapshot = snapshot();
+        return applyDiff(snapshot.getChangedTick(), newLines,
+                Diff.diff(snapshot.toArray(), newLines));
+    }
+    private static void checkDiffLines(String[] newLines) {
+        for (String line : newLines) {
+            if (line == null)
+                throw new NullPointerException("Buffer.replaceContentsWithDiff() null line");
+        }
+    }
+    private boolean applyDiff(long changedTick, String[] newLines,
+            java.util.List<Diff.Hunk> hunks) throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            return _applyDiff(changedTick, newLines, hunks);
+        } else {
+            ApplyDiffOperation op =
+                new ApplyDiffOperation(this, changedTick, newLines, hunks);
+            op.waitUntilDone();
+            return op.ret;
+        }
+    }
+    private boolean _applyDiff(long changedTick, String[] newLines,
+            java.util.List<Diff.Hunk> hunks) throws Exception {
+        if (_getChangedTick() != changedTick)
+            return false;
+        // from the bottom up, so the line numbers of the hunks above stay
+        // valid
+        for (int i = hunks.size() - 1; i >= 0; --i) {
+            Diff.Hunk hunk = hunks.get(i);
+            _replaceLines(hunk.oldStart + 1, hunk.oldEnd,
+                    Arrays.copyOfRange(newLines, hunk.newStart, hunk.newEnd));
+        }
+        return true;
+    }
+
+    /**
+     * Registers a listener to be told about every change to this buffer.
+     *
+     * Changes are collected as Vim makes them and passed on once per
+     * iteration of Vim's main loop, merged into a single BufferChange, so a
+     * listener can update its view of the buffer by only looking at the
+     * lines that changed.
+     *
+     * Listeners are called on the main thread, so they can read the buffer
+     * directly, but should hand anything slow off to another thread.
+     */
+    public void addChangeListener(ChangeListener listener) throws Exception {
+        if (changeListeners.addIfAbsent(listener) && changeListeners.size() == 1)
+            updateListening();
+    }
+    /**
+     * Unregisters a listener added with addChangeListener().
+     */
+    public void removeChangeListener(ChangeListener listener) throws Exception {
+        if (changeListeners.remove(listener) && changeListeners.isEmpty())
+            updateListening();
+    }
+    /**
+     * Returns a BufferMirror of this buffer, creating it on first use.
+     *
+     * The mirror follows every change to the buffer through a change
+     * listener and lets any thread read the lines of the buffer without
+     * waiting for the main thread. It is shared by everyone who asks for it
+     * until close() is called on it.
+     */
+    public BufferMirror mirror() throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            if (mirror == null) {
+                if (!isValid)
+                    throw new FreedBufferException("mirror()");
+                // a change recorded for the other listeners may already be
+                // part of the lines the mirror starts from
+                BufferMirror newMirror =
+                    new BufferMirror(this, !changeListeners.isEmpty());
+                addChangeListener(newMirror);
+                mirror = newMirror;
+            }
+            return mirror;
+        } else {
+            MirrorOperation op = new MirrorOperation(this);
+            op.waitUntilDone();
+            return op.ret;
+        }
+    }
+    /**
+     * Called by BufferMirror.close().
+     */
+    void closeMirror(BufferMirror closed) throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            if (mirror == closed)
+                mirror = null;
+            removeChangeListener(closed);
+        } else {
+            CloseMirrorOperation op = new CloseMirrorOperation(this, closed);
+            op.waitUntilDone();
+        }
+    }
+
+    /**
+     * Tells Vim whether to record changes for this buffer, depending on
+     * whether there are any listeners at the time it runs on the main thread.
+     */
+    private void updateListening() throws Exception {
+        if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
+            _setListening(!changeListeners.isEmpty());
+        } else {
+            UpdateListeningOperation op = new UpdateListeningOperation(this);
+            op.waitUntilDone();
+        }
+    }
+    private void _setListening(boolean listening) throws Exception {
+        if (!isValid)
+            throw new FreedBufferException("addChangeListener()");
+        long start = System.nanoTime();
+        vim.Buffer._setListening(vimBufferPointer, listening);
+        setListeningStats.record(start);
+    }
+    private native static void _setListening(long pointer, boolean listening);
+    private static final Stats.Metric setListeningStats =
+        Stats.nativeMethod("Buffer._setListening");
+
     public void insertLine(String newLine) throws Exception {
         insertLine(newLine, -1);
     }
@@ -281,9 +1056,13 @@ public class Buffer {
     private void _insertLine(String newLine, int index) throws Exception {
         if (!isValid)
             throw new FreedBufferException("insertLine()");
+        long start = System.nanoTime();
         vim.Buffer._insertLine(vimBufferPointer, newLine, index);
+        insertLineStats.record(start);
     }
     private native static void _insertLine(long vimBufferPointer, String newLine, int index);
+    private static final Stats.Metric insertLineStats =
+        Stats.nativeMethod("Buffer._insertLine");
 
     /**
      * Returns the buffer "next" to this buffer.
@@ -300,9 +1079,14 @@ public class Buffer {
     private Buffer _next() throws Exception {
         if (!isValid)
             throw new FreedBufferException("next()");
-        return vim.Buffer._next(vimBufferPointer);
+        long start = System.nanoTime();
+        Buffer ret = vim.Buffer._next(vimBufferPointer);
+        nextStats.record(start);
+        return ret;
     }
     private native static Buffer _next(long pointer);
+    private static final Stats.Metric nextStats =
+        Stats.nativeMethod("Buffer._next");
 
     /**
      * Returns the buffer "previous" to this buffer.
@@ -319,9 +1103,14 @@ public class Buffer {
     private Buffer _previous() throws Exception {
         if (!isValid)
             throw new FreedBufferException("previous()");
-        return vim.Buffer._previous(vimBufferPointer);
+        long start = System.nanoTime();
+        Buffer ret = vim.Buffer._previous(vimBufferPointer);
+        previousStats.record(start);
+        return ret;
     }
     private native static Buffer _previous(long pointer);
+    private static final Stats.Metric previousStats =
+        Stats.nativeMethod("Buffer._previous");
 
     /**
      * Tests if this Java Buffer is referring to a valid in-memory Vim buffer,
@@ -332,6 +1121,220 @@ public class Buffer {
         return isValid;
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    // Asynchronous variants
+    //
+    // These never block the calling thread. Each returns a CompletableFuture
+    // that completes on the main thread once the operation has been
+    // performed, or completes exceptionally with the exception it threw.
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Asynchronous version of setAsCurrent().
+     */
+    public CompletableFuture<Void> setAsCurrentAsync() {
+        return new SetAsCurrentOperation(this).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of getNumLines().
+     */
+    public CompletableFuture<Integer> getNumLinesAsync() {
+        final GetNumLinesOperation op = new GetNumLinesOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of getLine().
+     */
+    public CompletableFuture<String> getLineAsync(int lineNumber) {
+        final GetLineOperation op = new GetLineOperation(this, lineNumber);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of getLines().
+     */
+    public CompletableFuture<String[]> getLinesAsync(int startLineNumber, int endLineNumber) {
+        final GetLinesOperation op =
+            new GetLinesOperation(this, startLineNumber, endLineNumber);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of getAllLines().
+     */
+    public CompletableFuture<String[]> getAllLinesAsync() {
+        return getNumLinesAsync().thenCompose(n -> getLinesAsync(1, n));
+    }
+
+    /**
+     * Asynchronous version of readLines().
+     *
+     * The ByteBuffer must not be touched until the future has completed.
+     */
+    public CompletableFuture<RawLines> readLinesAsync(final int startLineNumber,
+            int endLineNumber, final ByteBuffer buffer, final Charset charset) {
+        checkReadLinesBuffer(buffer);
+        final ReadLinesOperation op =
+            new ReadLinesOperation(this, startLineNumber, endLineNumber, buffer);
+        return op.submitAsync().thenApply(
+                v -> new RawLines(buffer, charset, startLineNumber, op.ret));
+    }
+
+    /**
+     * Asynchronous version of exportTo(). Only copying the lines waits for
+     * the main thread, the file is written on the common ForkJoinPool.
+     */
+    public CompletableFuture<Long> exportToAsync(final Path path) {
+        final CaptureExportOperation op = new CaptureExportOperation(this);
+        return op.submitAsync().thenApplyAsync(v -> {
+            try {
+                return writeExport(path, op.ret);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Asynchronous version of getChangedTick().
+     */
+    public CompletableFuture<Long> getChangedTickAsync() {
+        final GetChangedTickOperation op = new GetChangedTickOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of snapshot().
+     */
+    public CompletableFuture<BufferSnapshot> snapshotAsync() {
+        final SnapshotOperation op = new SnapshotOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of replaceContentsWithDiff(). The diff is
+     * computed on the common ForkJoinPool.
+     */
+    public CompletableFuture<Boolean> replaceContentsWithDiffAsync(
+            final String[] newLines) {
+        checkDiffLines(newLines);
+        return snapshotAsync()
+            .thenApplyAsync(snapshot -> new ApplyDiffOperation(this,
+                        snapshot.getChangedTick(), newLines,
+                        Diff.diff(snapshot.toArray(), newLines)),
+                    ForkJoinPool.commonPool())
+            .thenCompose(op -> op.submitAsync().thenApply(v -> op.ret));
+    }
+
+    /**
+     * Asynchronous version of mirror().
+     */
+    public CompletableFuture<BufferMirror> mirrorAsync() {
+        final MirrorOperation op = new MirrorOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of search(Pattern).
+     */
+    public CompletableFuture<java.util.List<SearchMatch>> searchAsync(
+            final Pattern pattern) {
+        return searchAsync(pattern, null);
+    }
+
+    /**
+     * Asynchronous version of search(Pattern, Consumer).
+     */
+    public CompletableFuture<java.util.List<SearchMatch>> searchAsync(
+            final Pattern pattern, final Consumer<? super SearchMatch> onMatch) {
+        return snapshotAsync().thenApplyAsync(
+                snapshot -> Search.search(snapshot, pattern, onMatch),
+                ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Asynchronous version of applyEdits().
+     */
+    public CompletableFuture<Void> applyEditsAsync(java.util.List<TextEdit> edits) {
+        return new ApplyEditsOperation(this, edits).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of setLine().
+     */
+    public CompletableFuture<Void> setLineAsync(int lineNumber, String newLine) {
+        return new SetLineOperation(this, lineNumber, newLine).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of info().
+     */
+    public CompletableFuture<BufferInfo> infoAsync() {
+        final InfosOperation op = new InfosOperation(new Buffer[] { this });
+        return op.submitAsync().thenApply(v -> op.ret[0]);
+    }
+
+    /**
+     * Asynchronous version of infos().
+     */
+    public static CompletableFuture<BufferInfo[]> infosAsync(Buffer[] buffers) {
+        final InfosOperation op = new InfosOperation(buffers);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of getName().
+     */
+    public CompletableFuture<String> getNameAsync() {
+        final GetNameOperation op = new GetNameOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of getFullName().
+     */
+    public CompletableFuture<String> getFullNameAsync() {
+        final GetFullNameOperation op = new GetFullNameOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of replaceRange().
+     */
+    public CompletableFuture<Void> replaceRangeAsync(int startLineNumber,
+            int endLineNumber, String[] newLines) {
+        return new ReplaceLinesOperation(
+                this, startLineNumber, endLineNumber, newLines).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of insertLine().
+     */
+    public CompletableFuture<Void> insertLineAsync(String newLine) {
+        return insertLineAsync(newLine, -1);
+    }
+    public CompletableFuture<Void> insertLineAsync(String newLine, int index) {
+        return new InsertLineOperation(this, newLine, index).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of next().
+     */
+    public CompletableFuture<Buffer> nextAsync() {
+        final NextOperation op = new NextOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of previous().
+     */
+    public CompletableFuture<Buffer> previousAsync() {
+        final PreviousOperation op = new PreviousOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Internal operations for this class
     ////////////////////////////////////////////////////////////////////////////
@@ -349,6 +1352,8 @@ public class Buffer {
     }
 
     private static class GetNumLinesOperation extends Vim.Operation {
+        static final ThreadLocal<GetNumLinesOperation> slot =
+            ThreadLocal.withInitial(() -> new GetNumLinesOperation(null));
         Buffer buffer;
         int ret;
         public GetNumLinesOperation(Buffer buffer) {
@@ -356,12 +1361,19 @@ public class Buffer {
             this.buffer = buffer;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            buffer = null;
+        }
+        @Override
         public void Do() throws Exception {
             ret = buffer.getNumLines();
         }
     }
 
     private static class GetLineOperation extends Vim.Operation {
+        static final ThreadLocal<GetLineOperation> slot =
+            ThreadLocal.withInitial(() -> new GetLineOperation(null, 0));
         Buffer buffer;
         int lineNumber;
         String ret;
@@ -371,9 +1383,19 @@ public class Buffer {
             this.lineNumber = lineNumber;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            buffer = null;
+            ret = null;
+        }
+        @Override
         public void Do() throws Exception {
             ret = buffer.getLine(lineNumber);
         }
+        @Override
+        protected long payloadSize() {
+            return (ret != null) ? ret.length() : 0;
+        }
     }
 
     private static class GetLinesOperation extends Vim.Operation {
@@ -391,9 +1413,111 @@ public class Buffer {
         public void Do() throws Exception {
             ret = buffer.getLines(startLineNumber, endLineNumber);
         }
+        @Override
+        protected long payloadSize() {
+            return (ret != null) ? ret.length : 0;
+        }
+    }
+
+    private static class CaptureExportOperation extends Vim.Operation {
+        Buffer buffer;
+        java.util.List<ByteBuffer> ret;
+        public CaptureExportOperation(Buffer buffer) {
+            super();
+            this.buffer = buffer;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = buffer.captureExport();
+        }
+        @Override
+        protected long payloadSize() {
+            return (ret != null) ? ret.size() : 0;
+        }
+    }
+
+    private static class GetLineChunkOperation extends Vim.Operation {
+        Buffer buffer;
+        int startLineNumber;
+        int endLineNumber;
+        String[] ret;
+        public GetLineChunkOperation(Buffer buffer, int startLineNumber, int endLineNumber) {
+            super();
+            this.buffer = buffer;
+            this.startLineNumber = startLineNumber;
+            this.endLineNumber = endLineNumber;
+        }
+        @Override
+        protected Vim.Lane lane() {
+            return Vim.Lane.BULK;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = buffer._getLineChunk(startLineNumber, endLineNumber);
+        }
+        @Override
+        protected long payloadSize() {
+            return (ret != null) ? ret.length : 0;
+        }
+    }
+
+    private static class ReadLinesOperation extends Vim.Operation {
+        Buffer buffer;
+        int startLineNumber;
+        int endLineNumber;
+        ByteBuffer byteBuffer;
+        int ret;
+        public ReadLinesOperation(Buffer buffer, int startLineNumber,
+                int endLineNumber, ByteBuffer byteBuffer) {
+            super();
+            this.buffer = buffer;
+            this.startLineNumber = startLineNumber;
+            this.endLineNumber = endLineNumber;
+            this.byteBuffer = byteBuffer;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = buffer._readLines(startLineNumber, endLineNumber, byteBuffer);
+        }
+        @Override
+        protected long payloadSize() {
+            return ret;
+        }
+    }
+
+    private static class GetChangedTickOperation extends Vim.Operation {
+        Buffer buffer;
+        long ret;
+        public GetChangedTickOperation(Buffer buffer) {
+            super();
+            this.buffer = buffer;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = buffer.getChangedTick();
+        }
+    }
+
+    private static class SnapshotOperation extends Vim.Operation {
+        Buffer buffer;
+        BufferSnapshot ret;
+        public SnapshotOperation(Buffer buffer) {
+            super();
+            this.buffer = buffer;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = buffer.snapshot();
+        }
+        @Override
+        protected long payloadSize() {
+            return (ret != null) ? ret.getNumLines() : 0;
+        }
     }
 
     private static class SetLineOperation extends Vim.Operation {
+        static final ThreadLocal<SetLineOperation> slot =
+            ThreadLocal.withInitial(() -> new SetLineOperation(null, 0, null));
         Buffer buffer;
         int lineNumber;
         String newLine;
@@ -404,9 +1528,32 @@ public class Buffer {
             this.newLine = newLine;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            buffer = null;
+            newLine = null;
+        }
+        /**
+         * Replacing a line is redundant if the same line is replaced or
+         * deleted right after.
+         */
+        @Override
+        protected boolean coalesceInto(Vim.Operation later) {
+            if (!(later instanceof SetLineOperation))
+                return false;
+            SetLineOperation laterSet = (SetLineOperation) later;
+            return newLine != null &&
+                laterSet.buffer == buffer &&
+                laterSet.lineNumber == lineNumber;
+        }
+        @Override
         public void Do() throws Exception {
             buffer.setLine(lineNumber, newLine);
         }
+        @Override
+        protected long payloadSize() {
+            return (newLine != null) ? newLine.length() : 0;
+        }
     }
 
     private static class GetNameOperation extends Vim.Operation {
@@ -435,6 +1582,145 @@ public class Buffer {
         }
     }
 
+    private static class ReplaceLinesOperation extends Vim.Operation {
+        Buffer buffer;
+        int startLineNumber;
+        int endLineNumber;
+        String[] newLines;
+        public ReplaceLinesOperation(Buffer buffer, int startLineNumber,
+                int endLineNumber, String[] newLines) {
+            super();
+            this.buffer = buffer;
+            this.startLineNumber = startLineNumber;
+            this.endLineNumber = endLineNumber;
+            this.newLines = newLines;
+        }
+        @Override
+        public void Do() throws Exception {
+            buffer.replaceRange(startLineNumber, endLineNumber, newLines);
+        }
+        @Override
+        protected long payloadSize() {
+            return newLines.length;
+        }
+    }
+
+    private static class SetLinesOperation extends Vim.Operation {
+        Buffer buffer;
+        String[] newLines;
+        public SetLinesOperation(Buffer buffer, String[] newLines) {
+            super();
+            this.buffer = buffer;
+            this.newLines = newLines;
+        }
+        @Override
+        public void Do() throws Exception {
+            buffer.setLines(newLines);
+        }
+        @Override
+        protected long payloadSize() {
+            return newLines.length;
+        }
+    }
+
+    private static class ApplyEditsOperation extends Vim.Operation {
+        Buffer buffer;
+        java.util.List<TextEdit> edits;
+        public ApplyEditsOperation(Buffer buffer, java.util.List<TextEdit> edits) {
+            super();
+            this.buffer = buffer;
+            this.edits = edits;
+        }
+        @Override
+        public void Do() throws Exception {
+            buffer.applyEdits(edits);
+        }
+        @Override
+        protected long payloadSize() {
+            return edits.size();
+        }
+    }
+
+    private static class ApplyDiffOperation extends Vim.Operation {
+        Buffer buffer;
+        long changedTick;
+        String[] newLines;
+        java.util.List<Diff.Hunk> hunks;
+        boolean ret;
+        public ApplyDiffOperation(Buffer buffer, long changedTick,
+                String[] newLines, java.util.List<Diff.Hunk> hunks) {
+            super();
+            this.buffer = buffer;
+            this.changedTick = changedTick;
+            this.newLines = newLines;
+            this.hunks = hunks;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = buffer.applyDiff(changedTick, newLines, hunks);
+        }
+        @Override
+        protected long payloadSize() {
+            return hunks.size();
+        }
+    }
+
+    private static class UpdateListeningOperation extends Vim.Operation {
+        Buffer buffer;
+        public UpdateListeningOperation(Buffer buffer) {
+            super();
+            this.buffer = buffer;
+        }
+        @Override
+        public void Do() throws Exception {
+            buffer.updateListening();
+        }
+    }
+
+    private static class MirrorOperation extends Vim.Operation {
+        Buffer buffer;
+        BufferMirror ret;
+        public MirrorOperation(Buffer buffer) {
+            super();
+            this.buffer = buffer;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = buffer.mirror();
+        }
+    }
+
+    private static class CloseMirrorOperation extends Vim.Operation {
+        Buffer buffer;
+        BufferMirror closed;
+        public CloseMirrorOperation(Buffer buffer, BufferMirror closed) {
+            super();
+            this.buffer = buffer;
+            this.closed = closed;
+        }
+        @Override
+        public void Do() throws Exception {
+            buffer.closeMirror(closed);
+        }
+    }
+
+    private static class InfosOperation extends Vim.Operation {
+        Buffer[] buffers;
+        BufferInfo[] ret;
+        public InfosOperation(Buffer[] buffers) {
+            super();
+            this.buffers = buffers;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = Buffer.infos(buffers);
+        }
+        @Override
+        protected long payloadSize() {
+            return buffers.length;
+        }
+    }
+
     private static class InsertLineOperation extends Vim.Operation {
         Buffer buffer;
         String newLine;
@@ -449,6 +1735,10 @@ public class Buffer {
         public void Do() throws Exception {
             buffer.insertLine(newLine, index);
         }
+        @Override
+        protected long payloadSize() {
+            return (newLine != null) ? newLine.length() : 0;
+        }
     }
 
     private static class NextOperation extends Vim.Operation {
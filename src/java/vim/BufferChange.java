@@ -0,0 +1,78 @@
+package vim;
+
+/**
+ * A batch of changes to a buffer, passed to a Buffer.ChangeListener.
+ *
+ * All changes made to the buffer since the previous event are merged into
+ * the smallest range of lines that covers them, in the line numbers from
+ * before the changes: lines firstLine to endLine - 1 were replaced by
+ * endLine - firstLine + addedLines new lines, and every line from endLine on
+ * moved by addedLines. This is the same as the arguments of Vim's
+ * changed_lines(), or of a callback added with listener_add().
+ */
+public final class BufferChange {
+    private final Buffer buffer;
+    private final int firstLine;
+    private final int endLine;
+    private final int addedLines;
+    private final long changedTick;
+
+    BufferChange(Buffer buffer, int firstLine, int endLine, int addedLines,
+            long changedTick) {
+        this.buffer = buffer;
+        this.firstLine = firstLine;
+        this.endLine = endLine;
+        this.addedLines = addedLines;
+        this.changedTick = changedTick;
+    }
+
+    /**
+     * Returns the buffer that changed.
+     */
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the first line that changed.
+     */
+    public int getFirstLine() {
+        return firstLine;
+    }
+
+    /**
+     * Returns the first line below the change, before the change.
+     */
+    public int getEndLine() {
+        return endLine;
+    }
+
+    /**
+     * Returns the last line of the change, before the change. This is
+     * getFirstLine() - 1 if lines were only inserted.
+     */
+    public int getLastLine() {
+        return endLine - 1;
+    }
+
+    /**
+     * Returns the number of lines added, or removed if negative.
+     */
+    public int getAddedLines() {
+        return addedLines;
+    }
+
+    /**
+     * Returns b:changedtick of the buffer after the change.
+     */
+    public long getChangedTick() {
+        return changedTick;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferChange(" + buffer.getNumber() + ", first=" + firstLine +
+            ", end=" + endLine + ", added=" + addedLines +
+            ", changedtick=" + changedTick + ")";
+    }
+}
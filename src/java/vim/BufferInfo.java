@@ -0,0 +1,104 @@
+package vim;
+
+/**
+ * The properties of a buffer as they were at one moment, returned by
+ * Buffer.info() and Buffer.infos().
+ *
+ * Gathering them together costs a single call into Vim, where asking the
+ * Buffer for each one costs a call, and from another thread an Operation,
+ * apiece.
+ */
+public final class BufferInfo {
+    private final Buffer buffer;
+    private final int number;
+    private final String name;
+    private final String fullName;
+    private final String fileType;
+    private final int numLines;
+    private final long changedTick;
+    private final boolean modified;
+    private final boolean loaded;
+    private final boolean listed;
+
+    BufferInfo(Buffer buffer, int number, String name, String fullName,
+            String fileType, int numLines, long changedTick,
+            boolean modified, boolean loaded, boolean listed) {
+        this.buffer = buffer;
+        this.number = number;
+        this.name = name;
+        this.fullName = fullName;
+        this.fileType = fileType;
+        this.numLines = numLines;
+        this.changedTick = changedTick;
+        this.modified = modified;
+        this.loaded = loaded;
+        this.listed = listed;
+    }
+
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    public int getNumber() {
+        return number;
+    }
+
+    /**
+     * Returns the short file name, like Buffer.getName(), or null for a
+     * buffer without a name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the full file name, like Buffer.getFullName(), or null for a
+     * buffer without a name.
+     */
+    public String getFullName() {
+        return fullName;
+    }
+
+    /**
+     * Returns 'filetype', which is empty when not set.
+     */
+    public String getFileType() {
+        return fileType;
+    }
+
+    public int getNumLines() {
+        return numLines;
+    }
+
+    public long getChangedTick() {
+        return changedTick;
+    }
+
+    /**
+     * Returns whether the buffer has changes that were not written, like
+     * 'modified'.
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Returns whether the buffer is loaded, and not only in the buffer list.
+     */
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Returns whether the buffer is listed, like 'buflisted'.
+     */
+    public boolean isListed() {
+        return listed;
+    }
+
+    @Override
+    public String toString() {
+        return "BufferInfo(" + number + ", " + name + ", lines=" + numLines +
+            ", changedtick=" + changedTick + (modified ? ", modified" : "") + ")";
+    }
+}
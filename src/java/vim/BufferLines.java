@@ -0,0 +1,118 @@
+package vim;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A range of buffer lines that is read a chunk at a time, returned by
+ * Buffer.lines().
+ *
+ * Each chunk is fetched from the main thread with a single getLines() call,
+ * and the next chunk is requested as soon as the caller starts on the
+ * current one, so the caller rarely waits for the main thread. No more than
+ * two chunks are held at any time, however large the range.
+ *
+ * The lines are read while the iteration goes on, not all at once, so they
+ * reflect any changes made to the buffer in the meantime. If the buffer
+ * becomes shorter than the range, the iteration stops at its last line.
+ */
+public final class BufferLines implements Iterable<String> {
+    private final Buffer buffer;
+    private final int startLineNumber;
+    private final int endLineNumber;
+    private final int chunkSize;
+
+    BufferLines(Buffer buffer, int startLineNumber, int endLineNumber, int chunkSize) {
+        if (chunkSize < 1)
+            throw new IllegalArgumentException("chunkSize " + chunkSize);
+        this.buffer = buffer;
+        this.startLineNumber = startLineNumber;
+        this.endLineNumber = endLineNumber;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns a new iterator over the lines, which starts fetching the first
+     * chunk right away.
+     */
+    @Override
+    public Iterator<String> iterator() {
+        return new ChunkIterator();
+    }
+
+    /**
+     * Returns a sequential Stream of the lines.
+     */
+    public Stream<String> stream() {
+        Spliterator<String> spliterator = Spliterators.spliteratorUnknownSize(
+                iterator(), Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    private final class ChunkIterator implements Iterator<String> {
+        private String[] chunk = new String[0];
+        private int index = 0;
+        /**
+         * Line number of the first line of the next chunk to request.
+         */
+        private int nextLineNumber = startLineNumber;
+        private CompletableFuture<String[]> next;
+
+        ChunkIterator() {
+            prefetch();
+        }
+
+        private void prefetch() {
+            if (nextLineNumber > endLineNumber) {
+                next = null;
+                return;
+            }
+            int last = (int) Math.min(
+                    (long) nextLineNumber + chunkSize - 1, endLineNumber);
+            next = buffer.getLineChunkAsync(nextLineNumber, last);
+            nextLineNumber = last + 1;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index == chunk.length) {
+                if (next == null)
+                    return false;
+                try {
+                    chunk = next.join();
+                } catch (RuntimeException e) {
+                    next = null;
+                    throw e;
+                }
+                index = 0;
+                // the buffer ended before the range did
+                if (chunk.length == 0) {
+                    next = null;
+                    return false;
+                }
+                prefetch();
+            }
+            return true;
+        }
+
+        @Override
+        public String next() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+            String line = chunk[index];
+            // let the chunk go line by line rather than holding onto it
+            chunk[index++] = null;
+            return line;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
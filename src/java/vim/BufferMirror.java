@@ -0,0 +1,238 @@
+package vim;
+
+import java.util.Arrays;
+
+/**
+ * A copy of the lines of a buffer that is kept up to date as the buffer
+ * changes, for reading from any thread.
+ *
+ * The lines are held in immutable Versions. Each BufferChange produces a
+ * new Version that shares every chunk of lines outside the change with the
+ * previous one, and is then published with a single volatile write. Any
+ * number of threads can call current() and read the Version they get for as
+ * long as they like, without locking and without waiting for the main
+ * thread.
+ *
+ * Create one with Buffer.mirror().
+ */
+public final class BufferMirror implements Buffer.ChangeListener {
+    /**
+     * Chunks are split when they grow beyond MAX_CHUNK lines, and chunks of
+     * less than MIN_CHUNK lines are merged with their neighbour when an edit
+     * touches them.
+     */
+    private static final int MAX_CHUNK = 512;
+    private static final int MIN_CHUNK = 128;
+
+    /**
+     * An immutable version of the buffer's lines.
+     */
+    public static final class Version {
+        private final String[][] chunks;
+        /**
+         * starts[i] is the index of the first line of chunks[i], counting
+         * from 0, and starts[chunks.length] is the number of lines.
+         */
+        private final int[] starts;
+        private final long changedTick;
+
+        private Version(String[][] chunks, long changedTick) {
+            this.chunks = chunks;
+            this.changedTick = changedTick;
+            this.starts = new int[chunks.length + 1];
+            for (int i = 0; i < chunks.length; ++i) {
+                starts[i + 1] = starts[i] + chunks[i].length;
+            }
+        }
+
+        /**
+         * Returns b:changedtick of the buffer this version corresponds to.
+         */
+        public long getChangedTick() {
+            return changedTick;
+        }
+
+        public int getNumLines() {
+            return starts[chunks.length];
+        }
+
+        /**
+         * Returns the line at lineNumber, counting from 1 like Vim.
+         */
+        public String getLine(int lineNumber) {
+            int index = lineNumber - 1;
+            if (index < 0 || index >= getNumLines())
+                throw new IndexOutOfBoundsException("BufferMirror line " + lineNumber);
+            int c = chunkIndex(index);
+            return chunks[c][index - starts[c]];
+        }
+
+        /**
+         * Returns the lines from startLineNumber to endLineNumber, inclusive.
+         */
+        public String[] getLines(int startLineNumber, int endLineNumber) {
+            if (startLineNumber < 1 || endLineNumber > getNumLines() ||
+                    startLineNumber > endLineNumber + 1)
+                throw new IndexOutOfBoundsException(
+                        "BufferMirror lines " + startLineNumber + ", " + endLineNumber);
+            String[] ret = new String[endLineNumber - startLineNumber + 1];
+            copyLines(startLineNumber - 1, ret, 0, ret.length);
+            return ret;
+        }
+
+        /**
+         * Returns the index of the chunk holding the line at index, counting
+         * from 0.
+         */
+        private int chunkIndex(int index) {
+            // chunks are never empty, so starts has no duplicates
+            int c = Arrays.binarySearch(starts, 0, chunks.length, index);
+            return (c >= 0) ? c : -c - 2;
+        }
+
+        private void copyLines(int from, String[] dest, int destPos, int count) {
+            while (count > 0) {
+                int c = chunkIndex(from);
+                int offset = from - starts[c];
+                int n = Math.min(count, chunks[c].length - offset);
+                System.arraycopy(chunks[c], offset, dest, destPos, n);
+                from += n;
+                destPos += n;
+                count -= n;
+            }
+        }
+
+        /**
+         * Returns a new version where the lines at index first up to, but not
+         * including, end are replaced by newLines. Only the chunks that hold
+         * those lines are rebuilt.
+         */
+        private Version replace(int first, int end, String[] newLines, long newChangedTick) {
+            int numLines = getNumLines();
+            if (chunks.length == 0)
+                return new Version(split(newLines, 0, newLines.length), newChangedTick);
+
+            // the chunks from ci to cj, inclusive, are rebuilt
+            int ci = chunkIndex(Math.min(first, numLines - 1));
+            int cj = (end > first) ? chunkIndex(end - 1) : ci;
+            if (cj < ci)
+                cj = ci;
+            int keepBefore = first - starts[ci];
+            int rebuilt = starts[cj + 1] - starts[ci] - (end - first) + newLines.length;
+            while (rebuilt < MIN_CHUNK && cj + 1 < chunks.length) {
+                ++cj;
+                rebuilt += chunks[cj].length;
+            }
+
+            String[] lines = new String[rebuilt];
+            copyLines(starts[ci], lines, 0, keepBefore);
+            System.arraycopy(newLines, 0, lines, keepBefore, newLines.length);
+            copyLines(end, lines, keepBefore + newLines.length,
+                    starts[cj + 1] - end);
+
+            String[][] middle = split(lines, 0, lines.length);
+            String[][] newChunks =
+                new String[ci + middle.length + chunks.length - cj - 1][];
+            System.arraycopy(chunks, 0, newChunks, 0, ci);
+            System.arraycopy(middle, 0, newChunks, ci, middle.length);
+            System.arraycopy(chunks, cj + 1, newChunks, ci + middle.length,
+                    chunks.length - cj - 1);
+            return new Version(newChunks, newChangedTick);
+        }
+
+        private static String[][] split(String[] lines, int from, int to) {
+            int count = to - from;
+            int numChunks = (count + MAX_CHUNK - 1) / MAX_CHUNK;
+            String[][] ret = new String[numChunks][];
+            for (int i = 0; i < numChunks; ++i) {
+                int start = from + (int) ((long) count * i / numChunks);
+                int stop = from + (int) ((long) count * (i + 1) / numChunks);
+                ret[i] = Arrays.copyOfRange(lines, start, stop);
+            }
+            return ret;
+        }
+    }
+
+    private final Buffer buffer;
+    private volatile Version current;
+    /**
+     * Set when the next change may include edits that the current version
+     * already holds, so the whole buffer is read again instead.
+     */
+    private boolean reloadOnNextChange;
+
+    /**
+     * Only called by Buffer.mirror(), on the main thread.
+     */
+    BufferMirror(Buffer buffer, boolean reloadOnNextChange) throws Exception {
+        this.buffer = buffer;
+        this.reloadOnNextChange = reloadOnNextChange;
+        reload();
+    }
+
+    /**
+     * Returns the buffer that is mirrored.
+     */
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the latest version of the buffer's lines. Never blocks.
+     */
+    public Version current() {
+        return current;
+    }
+
+    /**
+     * Stops following the buffer. The latest version stays readable.
+     */
+    public void close() throws Exception {
+        buffer.closeMirror(this);
+    }
+
+    /**
+     * Applies a batch of changes to the mirror. Called on the main thread.
+     */
+    @Override
+    public void bufferChanged(BufferChange change) {
+        try {
+            if (reloadOnNextChange) {
+                reloadOnNextChange = false;
+                reload();
+                return;
+            }
+
+            int first = change.getFirstLine();
+            int end = change.getEndLine();
+            int count = end - first + change.getAddedLines();
+            String[] newLines = (count > 0)
+                ? buffer.getLines(first, first + count - 1)
+                : new String[0];
+            // getLines() has returned an array of the whole buffer before,
+            // so make sure only the requested lines came back
+            if (newLines == null || newLines.length != count) {
+                reload();
+                return;
+            }
+
+            Version next = current.replace(
+                    first - 1, end - 1, newLines, change.getChangedTick());
+            // should never happen, but a wrong mirror is worse than a slow one
+            if (next.getNumLines() != buffer.getNumLines()) {
+                reload();
+                return;
+            }
+            current = next;
+        } catch (Exception e) {
+            Vim.emsg("BufferMirror: " + e.toString());
+        }
+    }
+
+    private void reload() throws Exception {
+        BufferSnapshot snapshot = buffer.snapshot();
+        String[] lines = snapshot.toArray();
+        current = new Version(Version.split(lines, 0, lines.length),
+                snapshot.getChangedTick());
+    }
+}
@@ -0,0 +1,122 @@
+package vim;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Random access to the lines of a large buffer through a small cache of
+ * pages, returned by Buffer.pager().
+ *
+ * Lines are fetched from the main thread a page at a time, in the BULK lane,
+ * and kept in a cache of the least recently used pages that is bounded in
+ * bytes, so scanning a buffer of any size uses a constant amount of heap.
+ *
+ * Pages are dropped when the buffer changes at or above them, as reported
+ * to a change listener, so lines read after Vim's main loop has passed on a
+ * change reflect it. Close the pager to remove the listener.
+ *
+ * A pager is meant to be used by one thread at a time.
+ */
+public final class BufferPager implements AutoCloseable {
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final Buffer buffer;
+    private final int pageSize;
+    /**
+     * The lines of each cached page, by page index.
+     */
+    private final ByteLruCache<Integer, String[]> pages;
+    /**
+     * The first line changed since pages were last dropped, or NONE. Set on
+     * the main thread by the change listener.
+     */
+    private final AtomicInteger staleFrom = new AtomicInteger(NONE);
+    private final Buffer.ChangeListener listener = new Buffer.ChangeListener() {
+        public void bufferChanged(BufferChange change) {
+            staleFrom.accumulateAndGet(change.getFirstLine(), Math::min);
+        }
+    };
+
+    BufferPager(Buffer buffer, int pageSize, long maxBytes) throws Exception {
+        if (pageSize < 1)
+            throw new IllegalArgumentException("pageSize " + pageSize);
+        this.buffer = buffer;
+        this.pageSize = pageSize;
+        this.pages = new ByteLruCache<Integer, String[]>(
+                maxBytes, ByteLruCache::byteSizeOf);
+        buffer.addChangeListener(listener);
+    }
+
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Returns the estimated number of bytes the cached pages take up.
+     */
+    public long getCacheByteSize() {
+        return pages.getByteSize();
+    }
+
+    /**
+     * Returns the line at lineNumber, counting from 1 like Vim, or null if
+     * the buffer has fewer lines, so a scan can simply stop at the first
+     * null.
+     */
+    public String getLine(int lineNumber) throws Exception {
+        if (lineNumber < 1)
+            throw new IndexOutOfBoundsException("BufferPager line " + lineNumber);
+        dropStalePages();
+
+        int index = (lineNumber - 1) / pageSize;
+        String[] page = pages.get(index);
+        if (page == null) {
+            int first = index * pageSize + 1;
+            int last = (int) Math.min((long) first + pageSize - 1, Integer.MAX_VALUE);
+            try {
+                page = buffer.getLineChunkAsync(first, last).join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof Exception)
+                    throw (Exception) e.getCause();
+                throw e;
+            }
+            pages.put(index, page);
+        }
+        int offset = (lineNumber - 1) % pageSize;
+        return (offset < page.length) ? page[offset] : null;
+    }
+
+    /**
+     * Drops every cached page.
+     */
+    public void clear() {
+        pages.clear();
+    }
+
+    /**
+     * Stops following changes to the buffer and drops the cache.
+     */
+    @Override
+    public void close() {
+        try {
+            buffer.removeChangeListener(listener);
+        } catch (Exception e) {
+            // the listener is removed before Vim is told to stop recording
+            // changes, which can only fail once the buffer has been wiped
+            // out and there is nothing left to record
+        }
+        clear();
+    }
+
+    private void dropStalePages() {
+        int first = staleFrom.getAndSet(NONE);
+        if (first == NONE)
+            return;
+        final int firstStale = (Math.max(first, 1) - 1) / pageSize;
+        pages.removeKeys(index -> index >= firstStale);
+    }
+}
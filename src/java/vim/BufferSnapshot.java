@@ -0,0 +1,75 @@
+package vim;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * The lines of a buffer as they were at one b:changedtick.
+ *
+ * Returned by Buffer.snapshot(). A snapshot never changes, so it can be
+ * shared by any number of threads without locking.
+ */
+public final class BufferSnapshot {
+    private final Buffer buffer;
+    private final long changedTick;
+    private final String[] lines;
+    private final long byteSize;
+
+    BufferSnapshot(Buffer buffer, long changedTick, String[] lines) {
+        this.buffer = buffer;
+        this.changedTick = changedTick;
+        this.lines = lines;
+        this.byteSize = ByteLruCache.byteSizeOf(lines);
+    }
+
+    /**
+     * Returns the buffer this is a snapshot of.
+     */
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * Returns the b:changedtick of the buffer when the snapshot was taken.
+     */
+    public long getChangedTick() {
+        return changedTick;
+    }
+
+    /**
+     * Returns the number of lines in the snapshot.
+     */
+    public int getNumLines() {
+        return lines.length;
+    }
+
+    /**
+     * Returns the line at lineNumber, counting from 1 like Vim.
+     */
+    public String getLine(int lineNumber) {
+        if (lineNumber < 1 || lineNumber > lines.length)
+            throw new IndexOutOfBoundsException("BufferSnapshot line " + lineNumber);
+        return lines[lineNumber - 1];
+    }
+
+    /**
+     * Returns an unmodifiable view of all lines, where index 0 is line 1.
+     */
+    public java.util.List<String> getLines() {
+        return Collections.unmodifiableList(Arrays.asList(lines));
+    }
+
+    /**
+     * Returns a copy of all lines, like Buffer.getAllLines().
+     */
+    public String[] toArray() {
+        return lines.clone();
+    }
+
+    /**
+     * Returns an estimate of the memory the snapshot takes up, in bytes.
+     */
+    public long getByteSize() {
+        return byteSize;
+    }
+}
@@ -0,0 +1,113 @@
+package vim;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A cache that drops its least recently used entries once their estimated
+ * size in bytes passes a limit. Used for the snapshots of Buffer.snapshot()
+ * and the pages of BufferPager.
+ *
+ * Not thread safe.
+ */
+final class ByteLruCache<K, V> {
+    /**
+     * Rough number of bytes a String costs besides its characters.
+     */
+    private static final int STRING_OVERHEAD = 48;
+
+    /**
+     * Returns an estimate of the memory an array of lines takes up, in
+     * bytes.
+     */
+    static long byteSizeOf(String[] lines) {
+        long size = 16 + 8L * lines.length;
+        for (String line : lines) {
+            size += STRING_OVERHEAD + 2L * line.length();
+        }
+        return size;
+    }
+
+    private final ToLongFunction<V> sizeOf;
+    private volatile long maxBytes;
+    /**
+     * Ordered from least to most recently used.
+     */
+    private final LinkedHashMap<K, V> entries =
+        new LinkedHashMap<K, V>(16, 0.75f, true);
+    private long byteSize = 0;
+
+    ByteLruCache(long maxBytes, ToLongFunction<V> sizeOf) {
+        this.maxBytes = maxBytes;
+        this.sizeOf = sizeOf;
+    }
+
+    /**
+     * Sets the limit, which applies from the next put(). May be called from
+     * any thread.
+     */
+    void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Returns the entry for key, and marks it as the most recently used.
+     */
+    V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Adds or replaces the entry for key, then drops the least recently used
+     * entries until the cache fits its limit again. The entry that was just
+     * added is always kept, however large it is.
+     */
+    void put(K key, V value) {
+        V old = entries.put(key, value);
+        if (old != null)
+            byteSize -= sizeOf.applyAsLong(old);
+        byteSize += sizeOf.applyAsLong(value);
+
+        Iterator<V> it = entries.values().iterator();
+        while (byteSize > maxBytes && it.hasNext()) {
+            V eldest = it.next();
+            if (eldest == value)
+                continue;
+            byteSize -= sizeOf.applyAsLong(eldest);
+            it.remove();
+        }
+    }
+
+    V remove(K key) {
+        V old = entries.remove(key);
+        if (old != null)
+            byteSize -= sizeOf.applyAsLong(old);
+        return old;
+    }
+
+    /**
+     * Drops every entry whose key matches.
+     */
+    void removeKeys(Predicate<? super K> filter) {
+        Iterator<Map.Entry<K, V>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<K, V> entry = it.next();
+            if (filter.test(entry.getKey())) {
+                byteSize -= sizeOf.applyAsLong(entry.getValue());
+                it.remove();
+            }
+        }
+    }
+
+    void clear() {
+        entries.clear();
+        byteSize = 0;
+    }
+}
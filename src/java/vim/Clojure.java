@@ -309,6 +309,11 @@ public class Clojure implements Interpreter {
     ////////////////////////////////////////////////////////////////////////////
     private Object lock;
     private AtomicInteger promptReadyCounter;
+    /**
+     * Set when an evaluation was interrupted with CTRL-C but did not stop,
+     * until it finally finishes.
+     */
+    private volatile boolean evaluationAbandoned;
     private VimInputReader vimIn;
     private VimOutputWriter vimOut;
     private VimOutputWriter vimErr;
@@ -329,6 +334,7 @@ public class Clojure implements Interpreter {
 
         lock = new Object();
         promptReadyCounter = new AtomicInteger();
+        evaluationAbandoned = false;
         vimIn = new VimInputReader();
         vimOut = new VimOutputWriter();
         vimErr = new VimOutputWriter();
@@ -359,17 +365,24 @@ public class Clojure implements Interpreter {
 
     /**
      * Blocks execution until notifyPromptIsReady() is called.
+     *
+     * The main thread sleeps between operations instead of spinning, and is
+     * woken by either a queued operation or notifyPromptIsReady(). If the
+     * user presses CTRL-C, the REPL thread is interrupted, and if it does not
+     * become ready soon after, the evaluation is abandoned.
      */
-    private void waitForPrompt(int doneValue)
+    private void waitForPrompt(final int doneValue)
         throws
         Buffer.BufferCacheInconsistentException,
         Buffer.FreedBufferException,
         Window.FreedWindowException
     {
-        while (true) {
-            Vim.pollAndProcessOperationQueue();
-            if (promptReadyCounter.get() == doneValue)
-                break;
+        boolean finished = Vim.waitForEvaluation(
+                () -> promptReadyCounter.get() == doneValue, backgroundThread);
+        if (!finished) {
+            evaluationAbandoned = true;
+            vimErr.write("Interrupted, the Clojure evaluation is still running in the background\n");
+            return;
         }
 
         // using Vim.msg in map can cause Vim.msg to be called after the prompt
@@ -384,7 +397,9 @@ public class Clojure implements Interpreter {
      * prompt to tell VIM that it is safe to continue operation.
      */
     public void notifyPromptIsReady() {
-        promptReadyCounter.decrementAndGet();
+        if (promptReadyCounter.decrementAndGet() == 0)
+            evaluationAbandoned = false;
+        Vim.wakeMainThread();
     }
 
     /**
@@ -432,6 +447,10 @@ public class Clojure implements Interpreter {
         catch (Buffer.BufferCacheInconsistentException e) {}
         catch (Window.FreedWindowException e) {}
 
+        // a runaway evaluation would never let the REPL see the EOF
+        if (evaluationAbandoned)
+            return;
+
         try {
             backgroundThread.join();
         } catch (InterruptedException e) {
@@ -446,6 +465,10 @@ public class Clojure implements Interpreter {
      */
     @Override
     public String ex_java(String text) {
+        if (evaluationAbandoned) {
+            Vim.emsg("The interrupted Clojure evaluation is still running.");
+            return null;
+        }
         if (promptReadyCounter.get() > 0) {
             Vim.emsg("Recursively calling Clojure.eval() is not supported.");
             return null;
@@ -489,6 +512,10 @@ public class Clojure implements Interpreter {
 
     @Override
     public String ex_javafile(String path) {
+        if (evaluationAbandoned) {
+            Vim.emsg("The interrupted Clojure evaluation is still running.");
+            return null;
+        }
         int doneValue = promptReadyCounter.getAndIncrement();
         String cmd = "(load-file \"" + path +"\")";
         vimIn.pushUserInput(cmd);
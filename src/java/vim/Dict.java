@@ -163,12 +163,19 @@ public class Dict implements Iterable<Dict.DictPair>{
         if (Thread.currentThread().getId() != Vim.getMainThreadId())
             return;
 
+        Events.CollectionGCEvent event = new Events.CollectionGCEvent();
+        event.begin();
+        long start = System.nanoTime();
         synchronized (vim.Dict.lock) {
+            event.waitTime = System.nanoTime() - start;
+            event.payloadSize = garbageDicts.size();
             for (Long pointer : garbageDicts) {
                 vim.Dict.decrementReferenceCount(pointer.longValue());
             }
             garbageDicts.clear();
         }
+        event.collection = "Dict";
+        event.commit();
     }
 
     /**
@@ -191,12 +198,15 @@ public class Dict implements Iterable<Dict.DictPair>{
      * Gets or creates a Java Dict object given a raw system C pointer.
      */
     public static vim.Dict getOrCreate(long pointer) {
+        long start = System.nanoTime();
         synchronized (vim.Dict.lock) {
+            long waitTime = System.nanoTime() - start;
             garbageDicts.remove(pointer);
 
             WeakReference<vim.Dict> ref = activeDicts.get(pointer);
             // hasn't been created yet
             if (ref == null) {
+                Events.proxyCacheMiss("Dict", pointer, false, waitTime);
                 vim.Dict dict = new Dict(pointer);
                 dict.incrementReferenceCount(pointer);
                 ref = new WeakReference<vim.Dict>(dict);
@@ -207,6 +217,7 @@ public class Dict implements Iterable<Dict.DictPair>{
                 vim.Dict potential_dict = ref.get();
                 // freed by GC
                 if (potential_dict == null) {
+                    Events.proxyCacheMiss("Dict", pointer, true, waitTime);
                     vim.Dict dict = new Dict(pointer);
                     dict.incrementReferenceCount(pointer);
                     ref = new WeakReference<vim.Dict>(dict);
@@ -265,15 +276,25 @@ public class Dict implements Iterable<Dict.DictPair>{
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             return _size();
         } else {
-            SizeOperation op = new SizeOperation(this);
-            op.waitUntilDone();
-            return op.ret;
+            SizeOperation op = SizeOperation.slot.get();
+            op.dict = this;
+            try {
+                op.waitUntilDone();
+                return op.ret;
+            } finally {
+                op.clear();
+            }
         }
     }
     private long _size() {
-        return vim.Dict._size(vimDictPointer);
+        long start = System.nanoTime();
+        long ret = vim.Dict._size(vimDictPointer);
+        sizeStats.record(start);
+        return ret;
     }
     private native static long _size(long pointer);
+    private static final Stats.Metric sizeStats =
+        Stats.nativeMethod("Dict._size");
 
     /**
      * Gets the item associated with 'key'.
@@ -282,15 +303,26 @@ public class Dict implements Iterable<Dict.DictPair>{
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             return _get(key);
         } else {
-            GetOperation op = new GetOperation(this, key);
-            op.waitUntilDone();
-            return op.ret;
+            GetOperation op = GetOperation.slot.get();
+            op.dict = this;
+            op.key = key;
+            try {
+                op.waitUntilDone();
+                return op.ret;
+            } finally {
+                op.clear();
+            }
         }
     }
     private Object _get(String key) {
-        return vim.Dict._get(vimDictPointer, key);
+        long start = System.nanoTime();
+        Object ret = vim.Dict._get(vimDictPointer, key);
+        getStats.record(start);
+        return ret;
     }
     private native static Object _get(long pointer, String key);
+    private static final Stats.Metric getStats =
+        Stats.nativeMethod("Dict._get");
 
     /**
      * Insert the key-value pair into the dictionary, and replaces any
@@ -300,14 +332,25 @@ public class Dict implements Iterable<Dict.DictPair>{
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             _put(key, value);
         } else {
-            PutOperation op = new PutOperation(this, key, value);
-            op.waitUntilDone();
+            PutOperation op = PutOperation.slot.get();
+            op.dict = this;
+            op.key = key;
+            op.value = value;
+            try {
+                op.waitUntilDone();
+            } finally {
+                op.clear();
+            }
         }
     }
     private void _put(String key, Object value) {
+        long start = System.nanoTime();
         vim.Dict._put(vimDictPointer, key, value);
+        putStats.record(start);
     }
     private native static void _put(long pointer, String key, Object value);
+    private static final Stats.Metric putStats =
+        Stats.nativeMethod("Dict._put");
 
     /**
      * Removes a key-value pair from the dictionary.
@@ -321,9 +364,13 @@ public class Dict implements Iterable<Dict.DictPair>{
         }
     }
     private void _remove(String key) {
+        long start = System.nanoTime();
         vim.Dict._remove(vimDictPointer, key);
+        removeStats.record(start);
     }
     private native static void _remove(long pointer, String key);
+    private static final Stats.Metric removeStats =
+        Stats.nativeMethod("Dict._remove");
 
     /**
      * Provides an iterator over this collection and implements Iterable.
@@ -337,6 +384,8 @@ public class Dict implements Iterable<Dict.DictPair>{
     ////////////////////////////////////////////////////////////////////////////
 
     private static class SizeOperation extends Vim.Operation {
+        static final ThreadLocal<SizeOperation> slot =
+            ThreadLocal.withInitial(() -> new SizeOperation(null));
         Dict dict;
         long ret;
         public SizeOperation(Dict dict) {
@@ -344,12 +393,19 @@ public class Dict implements Iterable<Dict.DictPair>{
             this.dict = dict;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            dict = null;
+        }
+        @Override
         public void Do() throws Exception {
             ret = dict.size();
         }
     }
 
     private static class GetOperation extends Vim.Operation {
+        static final ThreadLocal<GetOperation> slot =
+            ThreadLocal.withInitial(() -> new GetOperation(null, null));
         Dict dict;
         String key;
         Object ret;
@@ -359,12 +415,21 @@ public class Dict implements Iterable<Dict.DictPair>{
             this.key = key;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            dict = null;
+            key = null;
+            ret = null;
+        }
+        @Override
         public void Do() throws Exception {
             ret = dict.get(key);
         }
     }
 
     private static class PutOperation extends Vim.Operation {
+        static final ThreadLocal<PutOperation> slot =
+            ThreadLocal.withInitial(() -> new PutOperation(null, null, null));
         Dict dict;
         String key;
         Object value;
@@ -375,6 +440,13 @@ public class Dict implements Iterable<Dict.DictPair>{
             this.value = value;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            dict = null;
+            key = null;
+            value = null;
+        }
+        @Override
         public void Do() throws Exception {
             dict.put(key, value);
         }
@@ -0,0 +1,182 @@
+package vim;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A line diff, for Buffer.replaceContentsWithDiff().
+ *
+ * Uses Myers' O(ND) algorithm in its linear space form: the middle snake of
+ * an optimal path is found by searching from both ends at once, and the
+ * parts before and after it are diffed recursively. Lines are compared as
+ * ints, after giving every distinct line a number.
+ */
+final class Diff {
+    /**
+     * Lines oldStart to oldEnd - 1 of the old lines are replaced by lines
+     * newStart to newEnd - 1 of the new lines, all counting from 0.
+     */
+    static final class Hunk {
+        final int oldStart;
+        final int oldEnd;
+        final int newStart;
+        final int newEnd;
+
+        Hunk(int oldStart, int oldEnd, int newStart, int newEnd) {
+            this.oldStart = oldStart;
+            this.oldEnd = oldEnd;
+            this.newStart = newStart;
+            this.newEnd = newEnd;
+        }
+
+        @Override
+        public String toString() {
+            return "Hunk(" + oldStart + ", " + oldEnd + ", " +
+                newStart + ", " + newEnd + ")";
+        }
+    }
+
+    private final int[] a;
+    private final int[] b;
+    private final boolean[] aChanged;
+    private final boolean[] bChanged;
+
+    private Diff(int[] a, int[] b) {
+        this.a = a;
+        this.b = b;
+        this.aChanged = new boolean[a.length];
+        this.bChanged = new boolean[b.length];
+    }
+
+    /**
+     * Returns the hunks that turn oldLines into newLines, from top to
+     * bottom.
+     */
+    static java.util.List<Hunk> diff(String[] oldLines, String[] newLines) {
+        Map<String, Integer> ids = new HashMap<String, Integer>();
+        Diff diff = new Diff(toIds(oldLines, ids), toIds(newLines, ids));
+        diff.compare(0, oldLines.length, 0, newLines.length);
+        return diff.hunks();
+    }
+
+    private static int[] toIds(String[] lines, Map<String, Integer> ids) {
+        int[] ret = new int[lines.length];
+        for (int i = 0; i < lines.length; ++i) {
+            Integer id = ids.get(lines[i]);
+            if (id == null) {
+                id = ids.size();
+                ids.put(lines[i], id);
+            }
+            ret[i] = id;
+        }
+        return ret;
+    }
+
+    /**
+     * Marks the lines of a[xoff, xlim) and b[yoff, ylim) that are not part
+     * of a longest common subsequence as changed.
+     */
+    private void compare(int xoff, int xlim, int yoff, int ylim) {
+        while (xoff < xlim && yoff < ylim && a[xoff] == b[yoff]) {
+            ++xoff;
+            ++yoff;
+        }
+        while (xoff < xlim && yoff < ylim && a[xlim - 1] == b[ylim - 1]) {
+            --xlim;
+            --ylim;
+        }
+
+        if (xoff == xlim) {
+            for (int y = yoff; y < ylim; ++y)
+                bChanged[y] = true;
+        } else if (yoff == ylim) {
+            for (int x = xoff; x < xlim; ++x)
+                aChanged[x] = true;
+        } else {
+            // both sides are left with a differing first and last line, so
+            // at least two edits are needed and both halves are smaller
+            int[] snake = middleSnake(xoff, xlim, yoff, ylim);
+            compare(xoff, snake[0], yoff, snake[1]);
+            compare(snake[2], xlim, snake[3], ylim);
+        }
+    }
+
+    /**
+     * Returns {x start, y start, x end, y end} of the middle snake of an
+     * optimal path from (xoff, yoff) to (xlim, ylim).
+     */
+    private int[] middleSnake(int xoff, int xlim, int yoff, int ylim) {
+        int n = xlim - xoff;
+        int m = ylim - yoff;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int max = (n + m + 1) / 2;
+        int offset = max + 1;
+        // furthest x reached on each diagonal k = x - y, counted from the
+        // start going forward and from the end going backward
+        int[] vf = new int[2 * max + 3];
+        int[] vb = new int[2 * max + 3];
+
+        for (int d = 0; d <= max; ++d) {
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && vf[offset + k - 1] < vf[offset + k + 1]))
+                    x = vf[offset + k + 1];
+                else
+                    x = vf[offset + k - 1] + 1;
+                int y = x - k;
+                int xs = x;
+                int ys = y;
+                while (x < n && y < m && a[xoff + x] == b[yoff + y]) {
+                    ++x;
+                    ++y;
+                }
+                vf[offset + k] = x;
+                int kb = delta - k;
+                if (odd && kb >= -(d - 1) && kb <= d - 1 && x + vb[offset + kb] >= n)
+                    return new int[] { xoff + xs, yoff + ys, xoff + x, yoff + y };
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && vb[offset + k - 1] < vb[offset + k + 1]))
+                    x = vb[offset + k + 1];
+                else
+                    x = vb[offset + k - 1] + 1;
+                int y = x - k;
+                int xs = x;
+                int ys = y;
+                while (x < n && y < m && a[xlim - 1 - x] == b[ylim - 1 - y]) {
+                    ++x;
+                    ++y;
+                }
+                vb[offset + k] = x;
+                int kf = delta - k;
+                if (!odd && kf >= -d && kf <= d && x + vf[offset + kf] >= n)
+                    return new int[] { xlim - x, ylim - y, xlim - xs, ylim - ys };
+            }
+        }
+        throw new IllegalStateException("Diff: no middle snake");
+    }
+
+    private java.util.List<Hunk> hunks() {
+        java.util.List<Hunk> ret = new ArrayList<Hunk>();
+        int x = 0;
+        int y = 0;
+        while (x < a.length || y < b.length) {
+            if (x < a.length && y < b.length && !aChanged[x] && !bChanged[y]) {
+                ++x;
+                ++y;
+                continue;
+            }
+            int xs = x;
+            int ys = y;
+            while (x < a.length && aChanged[x])
+                ++x;
+            while (y < b.length && bChanged[y])
+                ++y;
+            ret.add(new Hunk(xs, x, ys, y));
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,44 @@
+package vim;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Runs the evaluations of an interpreter on the main thread, where scripts
+ * have always run, and lets CTRL-C stop them.
+ *
+ * Evaluating on the main thread keeps nested evaluations working, such as a
+ * script that calls Vim.command() on a :java line or sources a file that
+ * does, and keeps every interpreter instance confined to a single thread.
+ *
+ * The main thread cannot watch for CTRL-C while it runs a script, so the
+ * script has to ask: Vim.pollInterrupt() checks for CTRL-C at most every
+ * few milliseconds, and sets the main thread's interrupt status when the
+ * user pressed it. Interpreters call it from loops where they can, and
+ * blocking calls in the script react to the interrupt status.
+ */
+class Evaluator {
+    /**
+     * The number of evaluations in progress, counting nested ones. Only
+     * used on the main thread.
+     */
+    private static int depth = 0;
+
+    private Evaluator() { }
+
+    /**
+     * Runs the evaluation on the calling thread and returns its result.
+     *
+     * Exceptions thrown by the evaluation are rethrown here. Once the
+     * outermost evaluation is over, the interrupt status of the thread is
+     * cleared, so a CTRL-C never leaks into the editor.
+     */
+    public static <T> T evaluate(Callable<T> evaluation) throws Exception {
+        ++depth;
+        try {
+            return evaluation.call();
+        } finally {
+            if (--depth == 0)
+                Thread.interrupted();
+        }
+    }
+}
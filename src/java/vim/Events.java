@@ -0,0 +1,132 @@
+package vim;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * Java Flight Recorder events for the Java bridge, found under "Vim" in a
+ * recording.
+ *
+ * JFR records the thread that commits each event. Events committed on the
+ * main thread on behalf of another thread also record that other thread.
+ *
+ * Creating an event object allocates even while recording is off, so the
+ * per-operation call sites first check the cached EventType, which is a
+ * plain field read. Rarer events, such as evaluations, are simply created
+ * and checked with isEnabled() or shouldCommit().
+ */
+final class Events {
+    private Events() { }
+
+    static final EventType OPERATION = EventType.getEventType(OperationEvent.class);
+
+    @Name("vim.Operation")
+    @Label("Operation")
+    @Category({"Vim", "Java Bridge"})
+    @Description("A Vim.Operation performed by the main thread on behalf of another thread")
+    static final class OperationEvent extends Event {
+        @Label("Operation")
+        String operation;
+
+        @Label("Lane")
+        String lane;
+
+        @Label("Requesting Thread")
+        Thread requester;
+
+        @Label("Wait Time")
+        @Description("Time spent queued before the main thread picked the operation up")
+        @Timespan(Timespan.NANOSECONDS)
+        long waitTime;
+
+        @Label("Payload Size")
+        @Description("Characters of text, or lines or items, carried by the operation")
+        long payloadSize;
+
+        @Label("Coalesced")
+        @Description("Number of earlier operations whose work was merged into this one")
+        int coalesced;
+
+        @Label("Cancelled")
+        boolean cancelled;
+    }
+
+    @Name("vim.Evaluation")
+    @Label("Evaluation")
+    @Category({"Vim", "Java Bridge"})
+    @Description("A :java, :javafile or javaeval() evaluation by the current interpreter")
+    static final class EvaluationEvent extends Event {
+        @Label("Command")
+        String command;
+
+        @Label("Interpreter")
+        String interpreter;
+
+        @Label("Payload Size")
+        @Description("Characters of code, or of the file name for :javafile")
+        long payloadSize;
+
+        @Label("Operations Performed")
+        @Description("Queued operations that the main thread performed while the evaluation ran")
+        long operationsPerformed;
+
+        @Label("Operations Wait Time")
+        @Description("Total time the operations performed during the evaluation spent queued")
+        @Timespan(Timespan.NANOSECONDS)
+        long operationsWaitTime;
+    }
+
+    @Name("vim.CollectionGC")
+    @Label("Collection GC")
+    @Category({"Vim", "Java Bridge"})
+    @Description("Releasing the Vim references of garbage collected List or Dict proxies")
+    static final class CollectionGCEvent extends Event {
+        @Label("Collection")
+        String collection;
+
+        @Label("Lock Wait Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long waitTime;
+
+        @Label("Payload Size")
+        @Description("Number of Vim references released")
+        long payloadSize;
+    }
+
+    @Name("vim.ProxyCacheMiss")
+    @Label("Proxy Cache Miss")
+    @Category({"Vim", "Java Bridge"})
+    @Description("Creating a new Java proxy for a Vim buffer, window, list or dict")
+    static final class ProxyCacheMissEvent extends Event {
+        @Label("Proxy")
+        String proxy;
+
+        @Label("Pointer")
+        long pointer;
+
+        @Label("Collected")
+        @Description("Whether an earlier proxy for the same pointer had been garbage collected")
+        boolean collected;
+
+        @Label("Lock Wait Time")
+        @Timespan(Timespan.NANOSECONDS)
+        long waitTime;
+    }
+
+    static void proxyCacheMiss(String proxy, long pointer, boolean collected,
+            long waitTime) {
+        ProxyCacheMissEvent event = new ProxyCacheMissEvent();
+        if (!event.isEnabled())
+            return;
+        event.proxy = proxy;
+        event.pointer = pointer;
+        event.collected = collected;
+        event.waitTime = waitTime;
+        event.commit();
+    }
+}
@@ -2,9 +2,20 @@ package vim;
 
 import groovy.lang.Binding;
 import groovy.lang.GroovyShell;
+import groovy.transform.ConditionalInterrupt;
+import org.codehaus.groovy.ast.ClassHelper;
+import org.codehaus.groovy.ast.Parameter;
+import org.codehaus.groovy.ast.VariableScope;
+import org.codehaus.groovy.ast.expr.ArgumentListExpression;
+import org.codehaus.groovy.ast.expr.ClosureExpression;
+import org.codehaus.groovy.ast.expr.StaticMethodCallExpression;
+import org.codehaus.groovy.ast.stmt.ExpressionStatement;
+import org.codehaus.groovy.control.CompilerConfiguration;
+import org.codehaus.groovy.control.customizers.ASTTransformationCustomizer;
 
 import java.io.IOException;
 import java.io.File;
+import java.util.Collections;
 
 public class Groovy implements Interpreter {
     private Binding binding;
@@ -13,7 +24,19 @@ public class Groovy implements Interpreter {
     public Groovy() {
         binding = new Binding();
         binding.setVariable("Vim", Vim.getInstance());
-        shell = new GroovyShell(binding);
+
+        // make loops and method calls in scripts call Vim.pollInterrupt(),
+        // so that CTRL-C can stop them
+        ClosureExpression check = new ClosureExpression(Parameter.EMPTY_ARRAY,
+                new ExpressionStatement(new StaticMethodCallExpression(
+                        ClassHelper.make(Vim.class), "pollInterrupt",
+                        ArgumentListExpression.EMPTY_ARGUMENTS)));
+        check.setVariableScope(new VariableScope());
+        CompilerConfiguration config = new CompilerConfiguration();
+        config.addCompilationCustomizers(new ASTTransformationCustomizer(
+                    Collections.<String, Object>singletonMap("value", check),
+                    ConditionalInterrupt.class));
+        shell = new GroovyShell(binding, config);
     }
 
     @Override
@@ -22,8 +45,8 @@ public class Groovy implements Interpreter {
     }
 
     @Override
-    public String ex_java(String text) {
-        Object ret = shell.evaluate(text);
+    public String ex_java(final String text) throws Exception {
+        Object ret = Evaluator.evaluate(() -> shell.evaluate(text));
         if (ret != null)
             return ret.toString();
         else
@@ -31,8 +54,8 @@ public class Groovy implements Interpreter {
     }
 
     @Override
-    public String ex_javafile(String path) throws IOException {
-        File file = new File(path);
+    public String ex_javafile(String path) throws Exception {
+        final File file = new File(path);
         if (!file.exists()) {
             Vim.emsg("Path given to Groovy.evalFile() does not exist: " +
                     path);
@@ -44,7 +67,7 @@ public class Groovy implements Interpreter {
             return null;
         }
 
-        Object ret = shell.evaluate(file);
+        Object ret = Evaluator.evaluate(() -> shell.evaluate(file));
         if (ret != null)
             return ret.toString();
         else
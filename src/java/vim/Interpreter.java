@@ -6,7 +6,7 @@ import java.io.IOException;
 interface Interpreter {
     public abstract void onExit();
 
-    public abstract String ex_java(String text);
-    public abstract String ex_javafile(String path) throws IOException;
+    public abstract String ex_java(String text) throws Exception;
+    public abstract String ex_javafile(String path) throws Exception;
     public abstract Object do_javaeval(String text);
 }
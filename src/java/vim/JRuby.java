@@ -17,9 +17,13 @@ public class JRuby implements Interpreter {
         ;
     }
 
+    /**
+     * Ruby code is not instrumented, so long running scripts should call
+     * Vim.pollInterrupt() in their loops to be stoppable with CTRL-C.
+     */
     @Override
-    public String ex_java(String text) {
-        Object ret = container.runScriptlet(text);
+    public String ex_java(final String text) throws Exception {
+        Object ret = Evaluator.evaluate(() -> container.runScriptlet(text));
         if (ret != null)
             return ret.toString();
         else
@@ -27,8 +31,9 @@ public class JRuby implements Interpreter {
     }
 
     @Override
-    public String ex_javafile(String path) throws IOException {
-        Object ret = container.runScriptlet(PathType.ABSOLUTE, path);
+    public String ex_javafile(final String path) throws Exception {
+        Object ret = Evaluator.evaluate(
+                () -> container.runScriptlet(PathType.ABSOLUTE, path));
         if (ret != null)
             return ret.toString();
         else
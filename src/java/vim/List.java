@@ -78,12 +78,19 @@ public class List implements Iterable<Object> {
         if (Thread.currentThread().getId() != Vim.getMainThreadId())
             return;
 
+        Events.CollectionGCEvent event = new Events.CollectionGCEvent();
+        event.begin();
+        long start = System.nanoTime();
         synchronized (vim.List.lock) {
+            event.waitTime = System.nanoTime() - start;
+            event.payloadSize = garbageLists.size();
             for (Long pointer : garbageLists) {
                 vim.List.decrementReferenceCount(pointer.longValue());
             }
             garbageLists.clear();
         }
+        event.collection = "List";
+        event.commit();
     }
 
     /**
@@ -106,12 +113,15 @@ public class List implements Iterable<Object> {
      * Get or create a Java List object given a raw system C pointer.
      */
     public static vim.List getOrCreate(long pointer) {
+        long start = System.nanoTime();
         synchronized (vim.List.lock) {
+            long waitTime = System.nanoTime() - start;
             garbageLists.remove(pointer);
 
             WeakReference<vim.List> ref = activeLists.get(pointer);
             // hasn't been created yet
             if (ref == null) {
+                Events.proxyCacheMiss("List", pointer, false, waitTime);
                 vim.List list = new List(pointer);
                 list.incrementReferenceCount(pointer);
                 ref = new WeakReference<vim.List>(list);
@@ -122,6 +132,7 @@ public class List implements Iterable<Object> {
                 vim.List potential_list = ref.get();
                 // freed by GC
                 if (potential_list == null) {
+                    Events.proxyCacheMiss("List", pointer, true, waitTime);
                     vim.List list = new List(pointer);
                     list.incrementReferenceCount(pointer);
                     ref = new WeakReference<vim.List>(list);
@@ -180,15 +191,25 @@ public class List implements Iterable<Object> {
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             return _size();
         } else {
-            SizeOperation op = new SizeOperation(this);
-            op.waitUntilDone();
-            return op.ret;
+            SizeOperation op = SizeOperation.slot.get();
+            op.list = this;
+            try {
+                op.waitUntilDone();
+                return op.ret;
+            } finally {
+                op.clear();
+            }
         }
     }
     private int _size() {
-        return vim.List._size(vimListPointer);
+        long start = System.nanoTime();
+        int ret = vim.List._size(vimListPointer);
+        sizeStats.record(start);
+        return ret;
     }
     private native static int _size(long pointer);
+    private static final Stats.Metric sizeStats =
+        Stats.nativeMethod("List._size");
 
     /**
      * Returns the element at the specified index of the list.
@@ -197,15 +218,26 @@ public class List implements Iterable<Object> {
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             return _get(index);
         } else {
-            GetOperation op = new GetOperation(this, index);
-            op.waitUntilDone();
-            return op.ret;
+            GetOperation op = GetOperation.slot.get();
+            op.list = this;
+            op.index = index;
+            try {
+                op.waitUntilDone();
+                return op.ret;
+            } finally {
+                op.clear();
+            }
         }
     }
     private Object _get(int index) {
-        return vim.List._get(vimListPointer, index);
+        long start = System.nanoTime();
+        Object ret = vim.List._get(vimListPointer, index);
+        getStats.record(start);
+        return ret;
     }
     private native static Object _get(long pointer, int index);
+    private static final Stats.Metric getStats =
+        Stats.nativeMethod("List._get");
 
     /**
      * Replace the element at 'index' in the list list with 'item'.
@@ -214,14 +246,25 @@ public class List implements Iterable<Object> {
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             _set(index, item);
         } else {
-            SetOperation op = new SetOperation(this, index, item);
-            op.waitUntilDone();
+            SetOperation op = SetOperation.slot.get();
+            op.list = this;
+            op.index = index;
+            op.item = item;
+            try {
+                op.waitUntilDone();
+            } finally {
+                op.clear();
+            }
         }
     }
     private void _set(int index, Object item) {
+        long start = System.nanoTime();
         vim.List._set(vimListPointer, index, item);
+        setStats.record(start);
     }
     private native static void _set(long pointer, int index, Object item);
+    private static final Stats.Metric setStats =
+        Stats.nativeMethod("List._set");
 
     /**
      * Removes the element at 'index' in the list.
@@ -235,9 +278,13 @@ public class List implements Iterable<Object> {
         }
     }
     private void _remove(int index) {
+        long start = System.nanoTime();
         vim.List._remove(vimListPointer, index);
+        removeStats.record(start);
     }
     private native static void _remove(long pointer, int index);
+    private static final Stats.Metric removeStats =
+        Stats.nativeMethod("List._remove");
 
     /**
      * Add 'item' to the end of the list.
@@ -251,9 +298,13 @@ public class List implements Iterable<Object> {
         }
     }
     private void _add(Object item) {
+        long start = System.nanoTime();
         vim.List._add(vimListPointer, item);
+        addStats.record(start);
     }
     private native static void _add(long pointer, Object item);
+    private static final Stats.Metric addStats =
+        Stats.nativeMethod("List._add");
 
     /**
      * Inserts 'item' at the specified position in the list.
@@ -267,9 +318,13 @@ public class List implements Iterable<Object> {
         }
     }
     private void _insert(Object item, int position) {
+        long start = System.nanoTime();
         vim.List._insert(vimListPointer, item, position);
+        insertStats.record(start);
     }
     private native static void _insert(long pointer, Object item, int position);
+    private static final Stats.Metric insertStats =
+        Stats.nativeMethod("List._insert");
 
     /**
      * Provides an iterator over this collection and implements Iterable.
@@ -283,6 +338,8 @@ public class List implements Iterable<Object> {
     ////////////////////////////////////////////////////////////////////////////
 
     private static class SizeOperation extends Vim.Operation {
+        static final ThreadLocal<SizeOperation> slot =
+            ThreadLocal.withInitial(() -> new SizeOperation(null));
         List list;
         int ret;
         public SizeOperation(List list) {
@@ -290,12 +347,19 @@ public class List implements Iterable<Object> {
             this.list = list;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            list = null;
+        }
+        @Override
         public void Do() throws Exception {
             ret = list.size();
         }
     }
 
     private static class GetOperation extends Vim.Operation {
+        static final ThreadLocal<GetOperation> slot =
+            ThreadLocal.withInitial(() -> new GetOperation(null, 0));
         List list;
         int index;
         Object ret;
@@ -305,12 +369,20 @@ public class List implements Iterable<Object> {
             this.index = index;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            list = null;
+            ret = null;
+        }
+        @Override
         public void Do() throws Exception {
             ret = list.get(index);
         }
     }
 
     private static class SetOperation extends Vim.Operation {
+        static final ThreadLocal<SetOperation> slot =
+            ThreadLocal.withInitial(() -> new SetOperation(null, 0, null));
         List list;
         int index;
         Object item;
@@ -321,6 +393,12 @@ public class List implements Iterable<Object> {
             this.item = item;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            list = null;
+            item = null;
+        }
+        @Override
         public void Do() throws Exception {
            list.set(index, item);
         }
@@ -0,0 +1,115 @@
+package vim;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Reading files into lines on worker threads, for Vim.openAll().
+ */
+final class OpenFiles {
+    private OpenFiles() { }
+
+    /**
+     * The lines of a file, as Vim stores them, and the details Vim needs to
+     * write it back unchanged.
+     */
+    static final class Contents {
+        final Path path;
+        /**
+         * The lines in UTF-8, each followed by a NUL. A NUL within a line is
+         * stored as a NL, like Vim does in memory.
+         */
+        final byte[] text;
+        final int numLines;
+        final boolean eol;
+        final boolean dos;
+        /**
+         * The name of the charset the file was read with, for 'fileencoding'.
+         */
+        final String encoding;
+
+        Contents(Path path, byte[] text, int numLines, boolean eol, boolean dos,
+                String encoding) {
+            this.path = path;
+            this.text = text;
+            this.numLines = numLines;
+            this.eol = eol;
+            this.dos = dos;
+            this.encoding = encoding;
+        }
+    }
+
+    /**
+     * Reads path and splits it into lines like Vim would with
+     * 'fileformats' set to "unix,dos": the file is DOS if every line break
+     * is a CR-LF.
+     *
+     * Files in other charsets than UTF-8 are converted to UTF-8, replacing
+     * anything that cannot be decoded. UTF-8 files are kept byte for byte.
+     */
+    static Contents read(Path path, Charset charset) throws IOException {
+        byte[] bytes = Files.readAllBytes(path);
+        if (!charset.equals(StandardCharsets.UTF_8)) {
+            CharBuffer chars = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(ByteBuffer.wrap(bytes));
+            ByteBuffer utf8 = StandardCharsets.UTF_8.encode(chars);
+            bytes = new byte[utf8.remaining()];
+            utf8.get(bytes);
+        }
+        int length = bytes.length;
+        // an empty file is an empty buffer, not a buffer with one empty line
+        if (length == 0)
+            return new Contents(path, new byte[0], 0, true, false, charset.name());
+
+        // every line break becomes the NUL that ends the line, and one more
+        // byte is needed if the last line has no line break
+        byte[] text = new byte[length + 1];
+        int size = 0;
+        int numLines = 0;
+        boolean dos = true;
+        int start = 0;
+        for (int i = 0; i < length; ++i) {
+            byte b = bytes[i];
+            if (b == '\n') {
+                if (i == start || bytes[i - 1] != '\r')
+                    dos = false;
+                text[size++] = 0;
+                ++numLines;
+                start = i + 1;
+            } else {
+                text[size++] = (b == 0) ? (byte) '\n' : b;
+            }
+        }
+        int terminated = numLines;
+        boolean eol = start == length;
+        if (!eol) {
+            text[size++] = 0;
+            ++numLines;
+        }
+
+        dos = dos && terminated > 0;
+        if (dos) {
+            // drop the CR before the end of every terminated line
+            int from = 0;
+            int to = 0;
+            for (int lines = 0; lines < terminated; ++from) {
+                if (text[from] == 0) {
+                    text[to - 1] = 0;
+                    ++lines;
+                } else {
+                    text[to++] = text[from];
+                }
+            }
+            System.arraycopy(text, from, text, to, size - from);
+        }
+        return new Contents(path, text, numLines, eol, dos, charset.name());
+    }
+}
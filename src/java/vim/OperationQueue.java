@@ -0,0 +1,60 @@
+package vim;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Multi-producer, single-consumer queue of operations for the main thread.
+ *
+ * Any number of background threads may add() concurrently, but only the main
+ * thread may call drain(). Operations are linked through their own "next"
+ * field, so adding an operation does not allocate a node.
+ *
+ * Producers push onto a lock-free stack with a single compare-and-set. The
+ * consumer swaps the whole stack out in one atomic step and reverses it, so
+ * draining never takes a lock and never contends per element.
+ */
+class OperationQueue {
+    private final AtomicReference<Vim.Operation> head;
+
+    public OperationQueue() {
+        head = new AtomicReference<Vim.Operation>(null);
+    }
+
+    /**
+     * Adds an operation to the queue. Safe to call from any thread.
+     */
+    public void add(Vim.Operation op) {
+        Vim.Operation oldHead;
+        do {
+            oldHead = head.get();
+            op.next = oldHead;
+        } while (!head.compareAndSet(oldHead, op));
+    }
+
+    /**
+     * Removes every queued operation at once.
+     *
+     * Only the main thread may call this.
+     *
+     * @return the first operation in FIFO order, with the rest reachable
+     *         through Operation.next; or null if the queue was empty.
+     */
+    public Vim.Operation drain() {
+        Vim.Operation op = head.getAndSet(null);
+        Vim.Operation reversed = null;
+        while (op != null) {
+            Vim.Operation next = op.next;
+            op.next = reversed;
+            reversed = op;
+            op = next;
+        }
+        return reversed;
+    }
+
+    /**
+     * Tests if there is nothing queued at the moment of the call.
+     */
+    public boolean isEmpty() {
+        return head.get() == null;
+    }
+}
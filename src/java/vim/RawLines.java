@@ -0,0 +1,225 @@
+package vim;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A range of buffer lines copied as raw bytes into a direct ByteBuffer by
+ * Buffer.readLines().
+ *
+ * Nothing is allocated per line until it is asked for. line() returns a
+ * CharSequence view that reads straight from the ByteBuffer as long as the
+ * line is plain ASCII, and only decodes the line into a String otherwise, so
+ * scanners and regular expressions can run over a large buffer without
+ * creating a String per line.
+ *
+ * The bytes are whatever Vim stores, in Vim's 'encoding', and NUL bytes
+ * within a line appear as '\n'. The lines are only valid until the
+ * ByteBuffer is written to again, for example by the next readLines() into
+ * the same ByteBuffer.
+ */
+public final class RawLines implements Iterable<CharSequence> {
+    private final ByteBuffer buffer;
+    private final Charset charset;
+    private final int firstLineNumber;
+    private final int numLines;
+    /**
+     * Index in buffer of the first byte of the first line, right after the
+     * table of offsets.
+     */
+    private final int dataStart;
+
+    /**
+     * @param buffer what Buffer.readLines() wrote to, starting at its
+     *               position.
+     */
+    RawLines(ByteBuffer buffer, Charset charset, int firstLineNumber, int numLines) {
+        this.buffer = buffer.slice().order(ByteOrder.nativeOrder());
+        this.charset = charset;
+        this.firstLineNumber = firstLineNumber;
+        this.numLines = numLines;
+        this.dataStart = (numLines + 1) * 4;
+    }
+
+    /**
+     * Returns the number of lines that were copied. This is less than
+     * requested when the ByteBuffer was too small to hold them all.
+     */
+    public int size() {
+        return numLines;
+    }
+
+    /**
+     * Returns the buffer line number of the first line.
+     */
+    public int getFirstLineNumber() {
+        return firstLineNumber;
+    }
+
+    /**
+     * Returns the buffer line number of the last line, or one less than
+     * getFirstLineNumber() if no line was copied.
+     */
+    public int getLastLineNumber() {
+        return firstLineNumber + numLines - 1;
+    }
+
+    /**
+     * Returns the number of bytes the lines take up in the ByteBuffer,
+     * including the table of offsets.
+     */
+    public int getByteSize() {
+        if (numLines == 0)
+            return 0;
+        return dataStart + offset(numLines);
+    }
+
+    /**
+     * Returns the length in bytes of the line at index, counting from 0.
+     */
+    public int lineLength(int index) {
+        checkIndex(index);
+        return offset(index + 1) - offset(index);
+    }
+
+    /**
+     * Returns a read-only view of the bytes of the line at index, counting
+     * from 0.
+     */
+    public ByteBuffer lineBytes(int index) {
+        checkIndex(index);
+        ByteBuffer bytes = buffer.asReadOnlyBuffer();
+        bytes.position(dataStart + offset(index));
+        bytes.limit(dataStart + offset(index + 1));
+        return bytes.slice();
+    }
+
+    /**
+     * Returns a lazy view of the line at index, counting from 0.
+     */
+    public CharSequence line(int index) {
+        checkIndex(index);
+        int start = dataStart + offset(index);
+        return new LineView(start, dataStart + offset(index + 1) - start);
+    }
+
+    /**
+     * Returns the line at index, counting from 0, as a String.
+     */
+    public String getLine(int index) {
+        return line(index).toString();
+    }
+
+    @Override
+    public Iterator<CharSequence> iterator() {
+        return new Iterator<CharSequence>() {
+            private int index = 0;
+
+            public boolean hasNext() {
+                return index < numLines;
+            }
+
+            public CharSequence next() {
+                if (index >= numLines)
+                    throw new NoSuchElementException();
+                return line(index++);
+            }
+
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private int offset(int index) {
+        return buffer.getInt(index * 4);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= numLines)
+            throw new IndexOutOfBoundsException("RawLines index " + index);
+    }
+
+    private String decode(int start, int length) {
+        byte[] bytes = new byte[length];
+        ByteBuffer src = buffer.duplicate();
+        src.position(start);
+        src.get(bytes);
+        return new String(bytes, charset);
+    }
+
+    /**
+     * A line, or part of one, read directly from the ByteBuffer while it is
+     * ASCII and decoded to a String on first use otherwise.
+     */
+    private final class LineView implements CharSequence {
+        private final int start;
+        private final int byteLength;
+        /**
+         * 1 if the bytes are all ASCII, 0 if not, -1 if not checked yet.
+         */
+        private int ascii;
+        private String decoded;
+
+        LineView(int start, int byteLength) {
+            this.start = start;
+            this.byteLength = byteLength;
+            this.ascii = -1;
+        }
+
+        private boolean isAscii() {
+            if (ascii < 0) {
+                ascii = 1;
+                for (int i = 0; i < byteLength; ++i) {
+                    if (buffer.get(start + i) < 0) {
+                        ascii = 0;
+                        break;
+                    }
+                }
+            }
+            return ascii == 1;
+        }
+
+        private String decoded() {
+            if (decoded == null)
+                decoded = decode(start, byteLength);
+            return decoded;
+        }
+
+        @Override
+        public int length() {
+            return isAscii() ? byteLength : decoded().length();
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (!isAscii())
+                return decoded().charAt(index);
+            if (index < 0 || index >= byteLength)
+                throw new IndexOutOfBoundsException("LineView index " + index);
+            return (char) buffer.get(start + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int startIndex, int endIndex) {
+            if (!isAscii())
+                return decoded().subSequence(startIndex, endIndex);
+            if (startIndex < 0 || endIndex > byteLength || startIndex > endIndex)
+                throw new IndexOutOfBoundsException(
+                        "LineView range " + startIndex + ", " + endIndex);
+            LineView sub = new LineView(start + startIndex, endIndex - startIndex);
+            sub.ascii = 1;
+            return sub;
+        }
+
+        @Override
+        public String toString() {
+            if (decoded != null)
+                return decoded;
+            return decode(start, byteLength);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package vim;
+
+import java.util.ArrayList;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Runs a regular expression over the lines of a BufferSnapshot on the common
+ * fork/join pool, for Buffer.search().
+ *
+ * The lines are split in halves until a piece is at most CHUNK_LINES long.
+ * Each piece is matched with its own Matcher, and the results are joined
+ * back together in line order.
+ */
+final class Search extends RecursiveTask<ArrayList<SearchMatch>> {
+    private static final long serialVersionUID = 1L;
+    private static final int CHUNK_LINES = 1024;
+
+    private final BufferSnapshot snapshot;
+    private final Pattern pattern;
+    private final Consumer<? super SearchMatch> onMatch;
+    /**
+     * Line numbers, from 1, of the first line to search and of the line
+     * after the last one.
+     */
+    private final int first;
+    private final int end;
+
+    Search(BufferSnapshot snapshot, Pattern pattern,
+            Consumer<? super SearchMatch> onMatch, int first, int end) {
+        this.snapshot = snapshot;
+        this.pattern = pattern;
+        this.onMatch = onMatch;
+        this.first = first;
+        this.end = end;
+    }
+
+    /**
+     * Searches all lines of snapshot. onMatch may be null, otherwise see
+     * Buffer.search(Pattern, Consumer).
+     */
+    static java.util.List<SearchMatch> search(BufferSnapshot snapshot,
+            Pattern pattern, Consumer<? super SearchMatch> onMatch) {
+        Search task = new Search(snapshot, pattern, onMatch,
+                1, snapshot.getNumLines() + 1);
+        if (snapshot.getNumLines() <= CHUNK_LINES)
+            return task.compute();
+        return task.invoke();
+    }
+
+    @Override
+    protected ArrayList<SearchMatch> compute() {
+        if (end - first <= CHUNK_LINES)
+            return searchLines();
+
+        int middle = (first + end) >>> 1;
+        Search lower = new Search(snapshot, pattern, onMatch, first, middle);
+        Search upper = new Search(snapshot, pattern, onMatch, middle, end);
+        upper.fork();
+        ArrayList<SearchMatch> ret = lower.compute();
+        ret.addAll(upper.join());
+        return ret;
+    }
+
+    private ArrayList<SearchMatch> searchLines() {
+        ArrayList<SearchMatch> ret = new ArrayList<SearchMatch>();
+        Matcher matcher = pattern.matcher("");
+        for (int lineNumber = first; lineNumber < end; ++lineNumber) {
+            matcher.reset(snapshot.getLine(lineNumber));
+            while (matcher.find()) {
+                ret.add(new SearchMatch(lineNumber,
+                            matcher.start(), matcher.end(), matcher.group()));
+            }
+        }
+        if (onMatch != null) {
+            for (SearchMatch match : ret) {
+                onMatch.accept(match);
+            }
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,54 @@
+package vim;
+
+/**
+ * A match found by Buffer.search().
+ *
+ * Columns count characters of the Java String of the line, from 0, not
+ * bytes like Vim's col().
+ */
+public final class SearchMatch {
+    private final int lineNumber;
+    private final int start;
+    private final int end;
+    private final String text;
+
+    SearchMatch(int lineNumber, int start, int end, String text) {
+        this.lineNumber = lineNumber;
+        this.start = start;
+        this.end = end;
+        this.text = text;
+    }
+
+    /**
+     * Returns the line the match is in, counting from 1 like Vim.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Returns the column of the first character of the match.
+     */
+    public int getStart() {
+        return start;
+    }
+
+    /**
+     * Returns the column after the last character of the match.
+     */
+    public int getEnd() {
+        return end;
+    }
+
+    /**
+     * Returns the matched text.
+     */
+    public String getText() {
+        return text;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchMatch(" + lineNumber + ", " + start + ", " + end + ")";
+    }
+}
@@ -0,0 +1,361 @@
+package vim;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Call counts and latency histograms for the Java bridge, shown by
+ * ":javastats" and returned by Vim.stats().
+ *
+ * Three kinds of things are measured: every Operation subclass that the main
+ * thread performs (time spent queued, and time spent in Do()), every native
+ * method that calls into Vim, and every ":java", ":javafile" and javaeval()
+ * evaluation.
+ *
+ * Recording is always on. Each Metric is resolved once, so recording is a
+ * couple of System.nanoTime() calls and atomic increments, without locks or
+ * allocation.
+ */
+public final class Stats {
+    private Stats() { }
+
+    /**
+     * What a Metric measures.
+     */
+    public static enum Kind {
+        OPERATION,
+        NATIVE,
+        EVALUATION
+    }
+
+    /**
+     * A histogram of durations in nanoseconds, with one bucket per power of
+     * two.
+     */
+    public static final class Histogram {
+        private static final int NUM_BUCKETS = 64;
+
+        private final AtomicLongArray buckets;
+        private final AtomicLong count;
+        private final AtomicLong total;
+        private final AtomicLong max;
+
+        private Histogram() {
+            buckets = new AtomicLongArray(NUM_BUCKETS);
+            count = new AtomicLong();
+            total = new AtomicLong();
+            max = new AtomicLong();
+        }
+
+        void record(long nanos) {
+            if (nanos < 0)
+                nanos = 0;
+            buckets.incrementAndGet(63 - Long.numberOfLeadingZeros(nanos | 1));
+            count.incrementAndGet();
+            total.addAndGet(nanos);
+            long m;
+            while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos))
+                ;
+        }
+
+        void reset() {
+            for (int i = 0; i < NUM_BUCKETS; ++i)
+                buckets.set(i, 0);
+            count.set(0);
+            total.set(0);
+            max.set(0);
+        }
+
+        public long getCount() {
+            return count.get();
+        }
+
+        public long getTotalNanos() {
+            return total.get();
+        }
+
+        public long getMaxNanos() {
+            return max.get();
+        }
+
+        public long getMeanNanos() {
+            long n = count.get();
+            return n == 0 ? 0 : total.get() / n;
+        }
+
+        /**
+         * Returns an upper bound for the given percentile (between 0 and 100)
+         * of the recorded durations, accurate to a factor of two.
+         */
+        public long getPercentileNanos(double percentile) {
+            long n = count.get();
+            if (n == 0)
+                return 0;
+            long rank = (long) Math.ceil(n * percentile / 100.0);
+            if (rank < 1)
+                rank = 1;
+            long seen = 0;
+            for (int i = 0; i < NUM_BUCKETS; ++i) {
+                seen += buckets.get(i);
+                if (seen >= rank) {
+                    long upper = (i >= 62) ? Long.MAX_VALUE : (2L << i) - 1;
+                    return Math.min(upper, max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+
+    /**
+     * Counters for one Operation subclass, native method or kind of
+     * evaluation.
+     */
+    public static final class Metric {
+        private final String name;
+        private final Kind kind;
+        private final AtomicLong calls;
+        private final AtomicLong coalesced;
+        private final AtomicLong cancelled;
+        private final Histogram waitTime;
+        private final Histogram execTime;
+
+        private Metric(String name, Kind kind) {
+            this.name = name;
+            this.kind = kind;
+            calls = new AtomicLong();
+            coalesced = new AtomicLong();
+            cancelled = new AtomicLong();
+            waitTime = new Histogram();
+            execTime = new Histogram();
+        }
+
+        /**
+         * Records one call that started at startNanos, as returned by
+         * System.nanoTime(), and has just returned.
+         */
+        public void record(long startNanos) {
+            calls.incrementAndGet();
+            execTime.record(System.nanoTime() - startNanos);
+        }
+
+        void recordPerformed(long waitNanos, long execNanos) {
+            calls.incrementAndGet();
+            waitTime.record(waitNanos);
+            execTime.record(execNanos);
+        }
+
+        void recordCoalesced(long waitNanos) {
+            calls.incrementAndGet();
+            coalesced.incrementAndGet();
+            waitTime.record(waitNanos);
+        }
+
+        void recordCancelled(long waitNanos) {
+            calls.incrementAndGet();
+            cancelled.incrementAndGet();
+            waitTime.record(waitNanos);
+        }
+
+        void reset() {
+            calls.set(0);
+            coalesced.set(0);
+            cancelled.set(0);
+            waitTime.reset();
+            execTime.reset();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        public long getCalls() {
+            return calls.get();
+        }
+
+        /**
+         * Number of operations whose work was merged into a later operation
+         * of the same lane.
+         */
+        public long getCoalesced() {
+            return coalesced.get();
+        }
+
+        /**
+         * Number of operations that were cancelled before the main thread
+         * got to them.
+         */
+        public long getCancelled() {
+            return cancelled.get();
+        }
+
+        /**
+         * Time between queueing an operation and the main thread picking it
+         * up. Always empty for natives and evaluations.
+         */
+        public Histogram getWaitTime() {
+            return waitTime;
+        }
+
+        /**
+         * Time spent running on the main thread.
+         */
+        public Histogram getExecTime() {
+            return execTime;
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Registry
+    ////////////////////////////////////////////////////////////////////////////
+
+    private static final ConcurrentHashMap<String, Metric> metrics =
+        new ConcurrentHashMap<String, Metric>();
+
+    private static final ClassValue<Metric> operations = new ClassValue<Metric>() {
+        @Override
+        protected Metric computeValue(Class<?> type) {
+            String name = type.getName();
+            if (name.startsWith("vim."))
+                name = name.substring(4);
+            return register(name, Kind.OPERATION);
+        }
+    };
+
+    private static final AtomicInteger peakPendingOperations = new AtomicInteger();
+
+    private static Metric register(String name, Kind kind) {
+        Metric metric = new Metric(name, kind);
+        Metric existing = metrics.putIfAbsent(name, metric);
+        return (existing != null) ? existing : metric;
+    }
+
+    /**
+     * Returns the Metric of a native method. Meant to be called once per
+     * native and kept in a static field.
+     */
+    static Metric nativeMethod(String name) {
+        return register(name, Kind.NATIVE);
+    }
+
+    /**
+     * Returns the Metric of a kind of evaluation, like ":java".
+     */
+    static Metric evaluation(String name) {
+        return register(name, Kind.EVALUATION);
+    }
+
+    /**
+     * Returns the Metric of an Operation subclass.
+     */
+    static Metric operation(Class<?> type) {
+        return operations.get(type);
+    }
+
+    /**
+     * Called whenever an operation is queued, with the number of operations
+     * now pending.
+     */
+    static void recordPendingOperations(int pending) {
+        int peak;
+        while (pending > (peak = peakPendingOperations.get()) &&
+                !peakPendingOperations.compareAndSet(peak, pending))
+            ;
+    }
+
+    /**
+     * Returns the highest number of pending operations seen at once.
+     */
+    public static int getPeakPendingOperations() {
+        return peakPendingOperations.get();
+    }
+
+    /**
+     * Returns every Metric that has been called at least once, sorted by kind
+     * and then by name.
+     */
+    public static List<Metric> getMetrics() {
+        List<Metric> ret = new ArrayList<Metric>();
+        for (Metric metric : metrics.values()) {
+            if (metric.getCalls() > 0)
+                ret.add(metric);
+        }
+        Collections.sort(ret, new Comparator<Metric>() {
+            @Override
+            public int compare(Metric a, Metric b) {
+                int c = a.kind.compareTo(b.kind);
+                return (c != 0) ? c : a.name.compareTo(b.name);
+            }
+        });
+        return ret;
+    }
+
+    /**
+     * Clears every counter. Calls that are in progress while this runs may be
+     * partially counted.
+     */
+    public static void reset() {
+        for (Metric metric : metrics.values()) {
+            metric.reset();
+        }
+        peakPendingOperations.set(0);
+    }
+
+    /**
+     * Returns a human readable report of every Metric, one line each, which
+     * is what ":javastats" displays.
+     */
+    public static String report(int pendingOperations) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("pending operations: ").append(pendingOperations)
+            .append(", peak: ").append(getPeakPendingOperations());
+
+        Kind kind = null;
+        for (Metric metric : getMetrics()) {
+            if (metric.kind != kind) {
+                kind = metric.kind;
+                sb.append('\n').append(kind == Kind.OPERATION ? "Operations"
+                        : kind == Kind.NATIVE ? "Natives" : "Evaluations")
+                    .append(':');
+            }
+            sb.append("\n  ").append(metric.name)
+                .append(" calls=").append(metric.getCalls());
+            if (metric.getCoalesced() > 0)
+                sb.append(" coalesced=").append(metric.getCoalesced());
+            if (metric.getCancelled() > 0)
+                sb.append(" cancelled=").append(metric.getCancelled());
+            if (metric.waitTime.getCount() > 0)
+                appendHistogram(sb, " wait", metric.waitTime);
+            if (metric.execTime.getCount() > 0)
+                appendHistogram(sb, " exec", metric.execTime);
+        }
+        return sb.toString();
+    }
+
+    private static void appendHistogram(StringBuilder sb, String label, Histogram h) {
+        sb.append(label)
+            .append(" p50=").append(formatNanos(h.getPercentileNanos(50)))
+            .append(" p99=").append(formatNanos(h.getPercentileNanos(99)))
+            .append(" max=").append(formatNanos(h.getMaxNanos()));
+    }
+
+    private static String formatNanos(long nanos) {
+        if (nanos < TimeUnit.MICROSECONDS.toNanos(1))
+            return nanos + "ns";
+        if (nanos < TimeUnit.MILLISECONDS.toNanos(1))
+            return String.format("%.1fus", nanos / 1e3);
+        if (nanos < TimeUnit.SECONDS.toNanos(1))
+            return String.format("%.1fms", nanos / 1e6);
+        return String.format("%.2fs", nanos / 1e9);
+    }
+}
@@ -0,0 +1,73 @@
+package vim;
+
+/**
+ * A replacement of a range of text in a buffer, for Buffer.applyEdits().
+ *
+ * Lines count from 1 like Vim. Columns count characters of the Java String
+ * of the line, from 0, like SearchMatch. The range starts at (startLine,
+ * startColumn) and ends before (endLine, endColumn), so an edit with equal
+ * start and end inserts text. newText may hold '\n' to split lines.
+ */
+public final class TextEdit {
+    private final int startLine;
+    private final int startColumn;
+    private final int endLine;
+    private final int endColumn;
+    private final String newText;
+
+    public TextEdit(int startLine, int startColumn, int endLine, int endColumn,
+            String newText) {
+        if (startLine > endLine || (startLine == endLine && startColumn > endColumn))
+            throw new IllegalArgumentException("TextEdit end before start: " +
+                    startLine + ":" + startColumn + " - " + endLine + ":" + endColumn);
+        if (newText == null)
+            throw new NullPointerException("TextEdit null newText");
+        this.startLine = startLine;
+        this.startColumn = startColumn;
+        this.endLine = endLine;
+        this.endColumn = endColumn;
+        this.newText = newText;
+    }
+
+    public int getStartLine() {
+        return startLine;
+    }
+
+    public int getStartColumn() {
+        return startColumn;
+    }
+
+    public int getEndLine() {
+        return endLine;
+    }
+
+    public int getEndColumn() {
+        return endColumn;
+    }
+
+    public String getNewText() {
+        return newText;
+    }
+
+    /**
+     * Returns true if this edit only inserts text.
+     */
+    boolean isInsert() {
+        return startLine == endLine && startColumn == endColumn;
+    }
+
+    /**
+     * Returns true if this edit's range starts at or after the end of
+     * other's.
+     */
+    boolean startsAfter(TextEdit other) {
+        return startLine > other.endLine ||
+            (startLine == other.endLine && startColumn >= other.endColumn);
+    }
+
+    @Override
+    public String toString() {
+        return "TextEdit(" + startLine + ":" + startColumn + " - " +
+            endLine + ":" + endColumn + ", \"" + newText + "\")";
+    }
+}
@@ -1,6 +1,11 @@
 package vim;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -10,11 +15,24 @@ import java.util.Queue;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.lang.Thread;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.io.FileWriter;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 public class Vim {
     ////////////////////////////////////////////////////////////////////////////
@@ -28,28 +46,355 @@ public class Vim {
     // Helper Classes
     ////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * A unit of work that a background thread hands to the main thread.
+     *
+     * Completion is signalled by parking and unparking the waiting thread, so
+     * an Operation allocates nothing beyond itself. An Operation may be
+     * reused once waitUntilDone() has returned, which is what the per-thread
+     * slots of the most frequently used operations do.
+     */
     public static abstract class Operation {
-        public Semaphore semaphore;
         public Exception e;
+        /**
+         * Link to the next operation while this one sits in OperationQueue.
+         */
+        Operation next;
+        /**
+         * When this operation was queued, from System.nanoTime().
+         */
+        long queuedAt;
+        /**
+         * The thread that queued this operation, for the JFR events.
+         */
+        Thread queuedBy;
+        /**
+         * Completed when the operation is done, if it was submitted with
+         * submitAsync().
+         */
+        private CompletableFuture<Void> future;
+        /**
+         * The thread blocked in waitUntilDone(), if any.
+         */
+        private volatile Thread waiter;
+        private volatile boolean finished;
+        /**
+         * Chain of earlier operations whose work this one took over, which
+         * are completed together with this one.
+         */
+        private Operation coalesced;
+        /**
+         * One of the STATE_* constants. Only the main thread moves an
+         * operation to STATE_RUNNING, and only cancel() moves it to
+         * STATE_CANCELLED, both from STATE_QUEUED.
+         */
+        private volatile int state;
+
+        private static final int STATE_NEW = 0;
+        private static final int STATE_QUEUED = 1;
+        private static final int STATE_RUNNING = 2;
+        private static final int STATE_CANCELLED = 3;
+        private static final AtomicIntegerFieldUpdater<Operation> STATE =
+            AtomicIntegerFieldUpdater.newUpdater(Operation.class, "state");
 
         public Operation() {
-            semaphore = new Semaphore(0);
+            state = STATE_NEW;
         }
+        /**
+         * Queues this operation and blocks until the main thread has
+         * performed it, rethrowing anything Do() threw.
+         *
+         * Waits even when the thread is interrupted, as the main thread may
+         * still write to this operation, and restores the interrupt status
+         * afterwards.
+         */
         public void waitUntilDone() throws Exception {
-            numPendingOperations.incrementAndGet();
-            operationQueue.add(this);
-            try {
-                semaphore.acquire();
-            } catch (InterruptedException e) {
+            submit();
+            boolean interrupted = false;
+            while (!finished) {
+                LockSupport.park(this);
+                if (Thread.interrupted())
+                    interrupted = true;
+            }
+            waiter = null;
+            if (interrupted)
                 Thread.currentThread().interrupt();
+
+            if (this.e != null) {
+                throw e;
+            }
+        }
+        /**
+         * Like waitUntilDone(), but gives up after the timeout or when the
+         * thread is interrupted.
+         *
+         * Giving up cancels the operation if the main thread has not started
+         * it yet, and throws TimeoutException or InterruptedException.
+         * Once the main thread has started it, this waits for it to finish
+         * regardless, as it is only a matter of Do() returning.
+         *
+         * An operation that has been given up on must not be reused.
+         */
+        public void waitUntilDone(long timeout, TimeUnit unit) throws Exception {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            submit();
+            boolean interrupted = false;
+            boolean givingUp = false;
+            while (!finished) {
+                if (givingUp) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining > 0)
+                        LockSupport.parkNanos(this, remaining);
+                }
+                if (Thread.interrupted())
+                    interrupted = true;
+                if (!finished && !givingUp &&
+                        (interrupted || deadline - System.nanoTime() <= 0)) {
+                    if (cancel()) {
+                        waiter = null;
+                        if (interrupted)
+                            throw new InterruptedException(
+                                    getClass().getName() + " cancelled");
+                        throw new TimeoutException(
+                                getClass().getName() + " not performed in time");
+                    }
+                    givingUp = true;
+                }
             }
+            waiter = null;
+            if (interrupted)
+                Thread.currentThread().interrupt();
+
             if (this.e != null) {
                 throw e;
             }
         }
+        private void submit() {
+            e = null;
+            finished = false;
+            waiter = Thread.currentThread();
+            state = STATE_QUEUED;
+            enqueue(this);
+        }
+        /**
+         * Cancels this operation if it is queued and the main thread has not
+         * started it yet.
+         *
+         * The main thread then skips Do() and completes the operation with a
+         * CancellationException.
+         *
+         * @return true, if the operation will not be performed
+         */
+        public boolean cancel() {
+            return STATE.compareAndSet(this, STATE_QUEUED, STATE_CANCELLED);
+        }
+        /**
+         * Tests if this operation was cancelled before it could run.
+         */
+        public boolean isCancelled() {
+            return state == STATE_CANCELLED;
+        }
+        /**
+         * Used by the main thread to claim this operation before running it.
+         *
+         * @return false, if it has been cancelled
+         */
+        boolean claim() {
+            return STATE.compareAndSet(this, STATE_QUEUED, STATE_RUNNING) ||
+                state == STATE_RUNNING;
+        }
+        /**
+         * Queues this operation for the main thread without waiting for it.
+         *
+         * The returned future completes once Do() has run, or completes
+         * exceptionally with whatever Do() threw. When called from the main
+         * thread, Do() is run immediately and the future is already
+         * complete.
+         *
+         * Dependent stages that are not "...Async" may run on the main
+         * thread, so keep them short.
+         */
+        public CompletableFuture<Void> submitAsync() {
+            e = null;
+            finished = false;
+            future = new CompletableFuture<Void>();
+            if (Thread.currentThread().getId() == mainThreadId) {
+                state = STATE_RUNNING;
+                try {
+                    Do();
+                } catch (Exception e) {
+                    this.e = e;
+                }
+                done();
+            } else {
+                state = STATE_QUEUED;
+                enqueue(this);
+            }
+            return future;
+        }
+        /**
+         * Signals whoever is waiting on this operation that it is finished.
+         */
+        void done() {
+            // read everything first, as the waiter may reuse this operation
+            // as soon as it sees "finished"
+            CompletableFuture<Void> f = future;
+            Exception exception = e;
+            Thread t = waiter;
+
+            finished = true;
+            if (t != null)
+                LockSupport.unpark(t);
+
+            if (f != null) {
+                if (exception != null)
+                    f.completeExceptionally(exception);
+                else
+                    f.complete(null);
+            }
+        }
+        /**
+         * The lane this operation is queued in. Defaults to INTERACTIVE;
+         * output and other work that can wait should use BULK.
+         */
+        protected Lane lane() {
+            return Lane.INTERACTIVE;
+        }
+        /**
+         * Called on the main thread when "later" was queued right after this
+         * operation in the same lane.
+         *
+         * Return true if "later" will take care of this operation's work as
+         * well, after moving any state it needs into "later". This operation
+         * is then completed together with "later" without running Do().
+         */
+        protected boolean coalesceInto(Operation later) {
+            return false;
+        }
+        /**
+         * Called by the thread that reused this operation from its slot once
+         * it is done with it. Drops the arguments and the result, which would
+         * otherwise stay reachable from the slot, and keep their Vim side
+         * reference counts, for as long as the thread lives.
+         */
+        protected void clear() {
+            e = null;
+        }
+        /**
+         * The amount of data this operation carries, in characters of text or
+         * in lines or items, as reported in the JFR events. Called on the
+         * main thread after Do() has run, and only while recording.
+         */
+        protected long payloadSize() {
+            return 0;
+        }
         public abstract void Do() throws Exception;
     }
 
+    /**
+     * Priority lanes of the main thread's operation queue.
+     *
+     * The main thread always performs every queued INTERACTIVE operation
+     * before the next BULK one, so a flood of messages from one thread does
+     * not delay a cursor movement from another.
+     */
+    public static enum Lane {
+        INTERACTIVE,
+        BULK
+    }
+
+    /**
+     * A sequence of main thread work that is handed off as a single unit.
+     *
+     * Each Callable added to the batch runs on the main thread, where every
+     * Buffer, Window, List and Dict method takes its direct path instead of
+     * queueing its own Operation. submit() makes one round-trip to the main
+     * thread for the whole batch, which runs the Callables back to back and
+     * releases the caller once.
+     *
+     * Clojure functions implement Callable, so they can be added directly.
+     * Create one with Vim.batch().
+     */
+    public static class Batch {
+        private List<FutureTask<?>> tasks;
+        private boolean submitted;
+
+        private Batch() {
+            tasks = new ArrayList<FutureTask<?>>();
+            submitted = false;
+        }
+
+        /**
+         * Records a Callable to be run on the main thread when the batch is
+         * submitted.
+         *
+         * @return a Future holding the result of the Callable, which is
+         *         available once submit() has returned.
+         */
+        public <T> Future<T> add(Callable<T> callable) {
+            if (submitted)
+                throw new IllegalStateException("Vim.Batch already submitted");
+            FutureTask<T> task = new FutureTask<T>(callable);
+            tasks.add(task);
+            return task;
+        }
+
+        /**
+         * Returns the number of Callables recorded so far.
+         */
+        public int size() {
+            return tasks.size();
+        }
+
+        /**
+         * Runs every recorded Callable on the main thread, in the order they
+         * were added, and waits once for all of them to finish.
+         *
+         * A Callable that throws does not stop the ones after it. If any of
+         * them threw, the first exception is rethrown here after the whole
+         * batch has run; use the Futures returned by add() to get at the
+         * remaining results.
+         *
+         * @return the result of every Callable, in the order they were added.
+         */
+        public Object[] submit() throws Exception {
+            if (submitted)
+                throw new IllegalStateException("Vim.Batch already submitted");
+            submitted = true;
+
+            if (Thread.currentThread().getId() == mainThreadId) {
+                runAll();
+            } else {
+                BatchOperation op = new BatchOperation(this);
+                op.waitUntilDone();
+            }
+
+            Object[] results = new Object[tasks.size()];
+            Throwable failure = null;
+            for (int i = 0; i < results.length; ++i) {
+                try {
+                    results[i] = tasks.get(i).get();
+                } catch (ExecutionException e) {
+                    if (failure == null)
+                        failure = e.getCause();
+                }
+            }
+            if (failure instanceof Exception)
+                throw (Exception) failure;
+            if (failure != null)
+                throw new ExecutionException(failure);
+            return results;
+        }
+
+        private void runAll() {
+            for (FutureTask<?> task : tasks) {
+                task.run();
+            }
+        }
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Variaables
     ////////////////////////////////////////////////////////////////////////////
@@ -74,6 +419,13 @@ public class Vim {
      * or if the operation needs to be queued for the main thread to execute.
      */
     private static long mainThreadId;
+    /**
+     * The main thread of the JVM, which is also Vim's main thread.
+     *
+     * Kept so that other threads can unpark it when it is sleeping in
+     * waitForWakeup().
+     */
+    private static Thread mainThread;
 
     /**
      * Atomic counter for remaining operations to be performed by the main
@@ -81,9 +433,16 @@ public class Vim {
      */
     private static AtomicInteger numPendingOperations;
     /**
-     * Lists of operations for the main thread to perform.
+     * Lists of operations for the main thread to perform, one per Lane.
      */
-    private static List<Operation> operationQueue;
+    private static OperationQueue interactiveQueue;
+    private static OperationQueue bulkQueue;
+    /**
+     * Whether Vim has already been told through _wakeVim() that there are
+     * operations to perform, so that a flood of operations only costs one
+     * wakeup.
+     */
+    private static AtomicBoolean vimWakeupPending;
 
     /**
      * The currently selected interpreter, from ":javarepl XXX".
@@ -94,6 +453,23 @@ public class Vim {
      */
     private static Map<String, Interpreter> interpreters;
 
+    /**
+     * Timings of each kind of evaluation, for ":javastats".
+     */
+    private static final Stats.Metric javaStats = Stats.evaluation(":java");
+    private static final Stats.Metric javafileStats = Stats.evaluation(":javafile");
+    private static final Stats.Metric javaevalStats = Stats.evaluation("javaeval()");
+    /**
+     * Number of operations the main thread has performed, which the JFR
+     * evaluation events report the increase of.
+     */
+    private static long operationsPerformed;
+    /**
+     * Total time the operations performed by the main thread spent queued,
+     * which the JFR evaluation events report the increase of.
+     */
+    private static long operationsWaitTime;
+
     ////////////////////////////////////////////////////////////////////////////
     // Functions
     ////////////////////////////////////////////////////////////////////////////
@@ -107,10 +483,13 @@ public class Vim {
      * Do any initialization that needs to occur before interpreters are created here.
      */
     public static boolean init() {
-        operationQueue = Collections.synchronizedList(new LinkedList<Vim.Operation>());
+        interactiveQueue = new OperationQueue();
+        bulkQueue = new OperationQueue();
+        vimWakeupPending = new AtomicBoolean(false);
         numPendingOperations = new AtomicInteger(0);
 
-        mainThreadId = Thread.currentThread().getId();
+        mainThread = Thread.currentThread();
+        mainThreadId = mainThread.getId();
 
         rangeFirstLine = 1;
         rangeLastLine = 1;
@@ -179,6 +558,23 @@ public class Vim {
         vim.Dict.purgeGarbage();
     }
 
+    /**
+     * Ends the JFR event of an evaluation and commits it if it is being
+     * recorded.
+     */
+    private static void commitEvaluationEvent(Events.EvaluationEvent event,
+            String command, String arg, long performedBefore, long waitTimeBefore) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.command = command;
+            event.interpreter = interpreter.getClass().getSimpleName();
+            event.payloadSize = (arg != null) ? arg.length() : 0;
+            event.operationsPerformed = operationsPerformed - performedBefore;
+            event.operationsWaitTime = operationsWaitTime - waitTimeBefore;
+            event.commit();
+        }
+    }
+
     /**
      * implementation of ":java XXX", DO NOT USE unless you are if_java.c.
      *
@@ -194,7 +590,21 @@ public class Vim {
 
         String ret;
         try {
-            ret = interpreter.ex_java(arg);
+            Events.EvaluationEvent event = new Events.EvaluationEvent();
+            long performedBefore = operationsPerformed;
+            long waitTimeBefore = operationsWaitTime;
+            event.begin();
+            long start = System.nanoTime();
+            try {
+                ret = interpreter.ex_java(arg);
+            } finally {
+                javaStats.record(start);
+                commitEvaluationEvent(event, ":java", arg, performedBefore,
+                        waitTimeBefore);
+            }
+        } catch (InterruptedException e) {
+            Vim.emsg(e.getMessage());
+            ret = null;
         } catch (Exception e) {
             ret = e.toString();
             for (StackTraceElement ste : Thread.currentThread().getStackTrace()) {
@@ -228,7 +638,21 @@ public class Vim {
 
         String ret;
         try {
-            ret = interpreter.ex_javafile(path);
+            Events.EvaluationEvent event = new Events.EvaluationEvent();
+            long performedBefore = operationsPerformed;
+            long waitTimeBefore = operationsWaitTime;
+            event.begin();
+            long start = System.nanoTime();
+            try {
+                ret = interpreter.ex_javafile(path);
+            } finally {
+                javafileStats.record(start);
+                commitEvaluationEvent(event, ":javafile", path, performedBefore,
+                        waitTimeBefore);
+            }
+        } catch (InterruptedException e) {
+            Vim.emsg(e.getMessage());
+            ret = null;
         } catch (Exception e) {
             ret = e.toString();
             for (StackTraceElement ste : Thread.currentThread().getStackTrace()) {
@@ -257,7 +681,18 @@ public class Vim {
         Object ret;
         String errorMessage = null;
         try {
-            ret = interpreter.do_javaeval(arg);
+            Events.EvaluationEvent event = new Events.EvaluationEvent();
+            long performedBefore = operationsPerformed;
+            long waitTimeBefore = operationsWaitTime;
+            event.begin();
+            long start = System.nanoTime();
+            try {
+                ret = interpreter.do_javaeval(arg);
+            } finally {
+                javaevalStats.record(start);
+                commitEvaluationEvent(event, "javaeval()", arg, performedBefore,
+                        waitTimeBefore);
+            }
         } catch (Exception e) {
             ret = null;
             errorMessage = e.toString();
@@ -314,6 +749,21 @@ public class Vim {
         doVimCollectionGC();
     }
 
+    /**
+     * implementation of ":javastats", DO NOT USE unless you are if_java.c.
+     *
+     * Displays the report of Vim.stats(). With ":javastats!" the counters are
+     * cleared afterwards.
+     */
+    public static void ex_javastats(boolean reset) {
+        String lines[] = Vim.stats().split("\\n");
+        for (String line : lines) {
+            Vim.msg(line);
+        }
+        if (reset)
+            Stats.reset();
+    }
+
     /**
      * Process operations requested by another thread on the main thread.
      *
@@ -333,22 +783,132 @@ public class Vim {
 
         boolean operationPerformed = false;
 
-        while (operationQueue.size() > 0) {
-            Operation op = operationQueue.remove(0);
-            try {
-                op.Do();
-            } catch (Exception e) {
-                op.e = e;
-            } finally {
-                op.semaphore.release();
-                numPendingOperations.decrementAndGet();
-            }
+        Operation op;
+        while ((op = interactiveQueue.drain()) != null) {
+            performOperations(op, false);
+            operationPerformed = true;
+        }
+        op = bulkQueue.drain();
+        if (op != null) {
+            performOperations(op, true);
             operationPerformed = true;
         }
 
         return operationPerformed;
     }
 
+    /**
+     * Performs a chain of operations drained from one lane, coalescing
+     * neighbours where the operations allow it.
+     *
+     * When working through the BULK lane, any INTERACTIVE operations that
+     * arrive in the meantime are performed before the next BULK one.
+     */
+    private static void performOperations(Operation op, boolean isBulk) {
+        while (op != null) {
+            Operation next = op.next;
+            op.next = null;
+
+            if (!op.claim()) {
+                long waitTime = System.nanoTime() - op.queuedAt;
+                Stats.operation(op.getClass()).recordCancelled(waitTime);
+                if (Events.OPERATION.isEnabled()) {
+                    Events.OperationEvent event = new Events.OperationEvent();
+                    event.operation = op.getClass().getName();
+                    event.lane = op.lane().name();
+                    event.requester = op.queuedBy;
+                    event.waitTime = waitTime;
+                    event.cancelled = true;
+                    event.commit();
+                }
+                op.queuedBy = null;
+                op.e = new CancellationException(op.getClass().getName());
+                numPendingOperations.decrementAndGet();
+                op.done();
+            } else if (next != null && next.claim() && op.coalesceInto(next)) {
+                // op may already carry the operations that coalesced into it,
+                // so append next's chain to the end of op's rather than
+                // replacing it
+                Operation tail = op;
+                while (tail.coalesced != null)
+                    tail = tail.coalesced;
+                tail.coalesced = next.coalesced;
+                next.coalesced = op;
+            } else {
+                performOperation(op);
+            }
+            op = next;
+
+            if (isBulk && op != null) {
+                Operation interactive;
+                while ((interactive = interactiveQueue.drain()) != null) {
+                    performOperations(interactive, false);
+                }
+            }
+        }
+    }
+
+    private static void performOperation(Operation op) {
+        Events.OperationEvent event = null;
+        if (Events.OPERATION.isEnabled()) {
+            event = new Events.OperationEvent();
+            event.begin();
+        }
+        long start = System.nanoTime();
+        try {
+            op.Do();
+        } catch (Exception e) {
+            op.e = e;
+        } finally {
+            Stats.operation(op.getClass())
+                .recordPerformed(start - op.queuedAt, System.nanoTime() - start);
+            if (event != null)
+                event.end();
+            ++operationsPerformed;
+            operationsWaitTime += start - op.queuedAt;
+            int numCoalesced = 0;
+            Operation c = op.coalesced;
+            op.coalesced = null;
+            while (c != null) {
+                Operation n = c.coalesced;
+                c.coalesced = null;
+                Stats.operation(c.getClass()).recordCoalesced(start - c.queuedAt);
+                ++numCoalesced;
+                c.queuedBy = null;
+                c.e = op.e;
+                numPendingOperations.decrementAndGet();
+                c.done();
+                c = n;
+            }
+            if (event != null && event.shouldCommit()) {
+                event.operation = op.getClass().getName();
+                event.lane = op.lane().name();
+                event.requester = op.queuedBy;
+                event.waitTime = start - op.queuedAt;
+                event.payloadSize = op.payloadSize();
+                event.coalesced = numCoalesced;
+                event.commit();
+            }
+            op.queuedBy = null;
+            numPendingOperations.decrementAndGet();
+            op.done();
+        }
+    }
+
+    /**
+     * Queues an operation in its lane and wakes the main thread.
+     */
+    private static void enqueue(Operation op) {
+        op.queuedAt = System.nanoTime();
+        op.queuedBy = Thread.currentThread();
+        Stats.recordPendingOperations(numPendingOperations.incrementAndGet());
+        if (op.lane() == Lane.BULK)
+            bulkQueue.add(op);
+        else
+            interactiveQueue.add(op);
+        wakeMainThread();
+    }
+
     public static long getMainThreadId() {
         return mainThreadId;
     }
@@ -358,14 +918,172 @@ public class Vim {
      * be executed in the main thread.
      */
     public static void addPendingOperation(Operation op) {
-        operationQueue.add(op);
+        op.state = Operation.STATE_QUEUED;
+        enqueue(op);
+    }
+
+    /**
+     * Wakes the main thread if it is sleeping in waitForWakeup(), or if Vim
+     * is idle waiting for the user to type.
+     *
+     * Called automatically whenever an operation is queued. Interpreters
+     * should also call this when whatever the main thread is waiting on (like
+     * the REPL prompt becoming ready) has happened.
+     */
+    public static void wakeMainThread() {
+        if (mainThread == null)
+            return;
+        LockSupport.unpark(mainThread);
+        if (Thread.currentThread() != mainThread &&
+                vimWakeupPending.compareAndSet(false, true)) {
+            _wakeVim();
+        }
+    }
+    private static native void _wakeVim();
+
+    /**
+     * DO NOT USE.
+     *
+     * Vim calls this from its input loop when a background thread has queued
+     * operations, so that they are performed while Vim is idle and not only
+     * while a ":java" command is running.
+     */
+    public static void processPendingOperations() {
+        vimWakeupPending.set(false);
+        try {
+            while (Vim.processOperationQueue())
+                ;
+        }
+        catch (Buffer.BufferCacheInconsistentException e) {}
+        catch (Buffer.FreedBufferException e) {}
+        catch (Window.FreedWindowException e) {}
+    }
+
+    /**
+     * Puts the main thread to sleep until an operation is queued or
+     * wakeMainThread() is called.
+     *
+     * Returns immediately if there are already pending operations, or if a
+     * wakeup arrived since the last call. Spurious returns are possible, so
+     * callers must re-check whatever they are waiting for in a loop.
+     *
+     * Does nothing when not called from the main thread.
+     */
+    public static void waitForWakeup() {
+        if (Thread.currentThread() != mainThread)
+            return;
+        if (numPendingOperations.get() > 0)
+            return;
+        LockSupport.park(instance);
+    }
+    /**
+     * Like waitForWakeup(), but sleeps for at most the given number of
+     * nanoseconds.
+     */
+    public static void waitForWakeup(long nanos) {
+        if (Thread.currentThread() != mainThread)
+            return;
+        if (numPendingOperations.get() > 0)
+            return;
+        LockSupport.parkNanos(instance, nanos);
+    }
+
+    /**
+     * How often the main thread checks for CTRL-C while an interpreter is
+     * evaluating.
+     */
+    private static final long INTERRUPT_POLL_NANOS =
+        TimeUnit.MILLISECONDS.toNanos(50);
+    /**
+     * How long an interrupted evaluation gets to stop before the main thread
+     * stops waiting for it.
+     */
+    private static final long INTERRUPT_GRACE_NANOS =
+        TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Used by the various interpreter classes to wait for an evaluation that
+     * runs on another thread.
+     *
+     * Performs queued operations while waiting. When the user presses CTRL-C,
+     * the evaluating thread is interrupted. If the evaluation has still not
+     * finished after a grace period, this stops waiting so that the editor
+     * becomes usable again, and the evaluation is left running in the
+     * background.
+     *
+     * @return true, if the evaluation finished;
+     *         false, if it was interrupted and had to be abandoned.
+     */
+    public static boolean waitForEvaluation(BooleanSupplier isDone, Thread evaluator)
+        throws
+        Buffer.BufferCacheInconsistentException,
+        Buffer.FreedBufferException,
+        Window.FreedWindowException
+    {
+        long interruptedAt = 0;
+        boolean wasInterrupted = false;
+        while (true) {
+            Vim.pollAndProcessOperationQueue();
+            if (isDone.getAsBoolean())
+                return true;
+
+            if (!wasInterrupted) {
+                if (_checkInterrupt()) {
+                    wasInterrupted = true;
+                    interruptedAt = System.nanoTime();
+                    if (evaluator != null)
+                        evaluator.interrupt();
+                }
+            } else if (System.nanoTime() - interruptedAt > INTERRUPT_GRACE_NANOS) {
+                return false;
+            }
+
+            Vim.waitForWakeup(INTERRUPT_POLL_NANOS);
+        }
+    }
+    /**
+     * Checks if the user has pressed CTRL-C, and clears Vim's interrupt flag
+     * if so.
+     */
+    private static native boolean _checkInterrupt();
+
+    /**
+     * When the last check for CTRL-C by pollInterrupt() was made. Only used
+     * on the main thread.
+     */
+    private static long lastInterruptPoll = 0;
+
+    /**
+     * Lets a script that runs on the main thread notice CTRL-C.
+     *
+     * Checks for CTRL-C at most every INTERRUPT_POLL_NANOS, so this is cheap
+     * enough to call on every iteration of a loop. When the user has pressed
+     * it, the interrupt status of the main thread is set, so that blocking
+     * calls in the script stop as well, and true is returned. The interrupt
+     * status is cleared again when the evaluation ends.
+     *
+     * Always returns false on other threads.
+     */
+    public static boolean pollInterrupt() {
+        if (Thread.currentThread() != mainThread)
+            return false;
+        long now = System.nanoTime();
+        if (now - lastInterruptPoll < INTERRUPT_POLL_NANOS)
+            return false;
+        lastInterruptPoll = now;
+        if (!_checkInterrupt())
+            return false;
+        Thread.currentThread().interrupt();
+        return true;
     }
 
     /**
      * Used by the various interpreter classes to poll and process any pending
      * operations that need to be performed on the main thread.
      *
-     * As a result any interpreter classes that need this need to spin-wait
+     * Returns once every operation that has been announced has been
+     * performed. The main thread sleeps instead of spinning while an
+     * announced operation has not reached the queue yet.
      */
     public static void pollAndProcessOperationQueue()
         throws
@@ -378,15 +1096,77 @@ public class Vim {
             while (maybeAnotherOperation) {
                 maybeAnotherOperation = Vim.processOperationQueue();
             }
+            if (Thread.currentThread() != mainThread)
+                break;
+            Vim.waitForWakeup();
+        }
+    }
+
+    /**
+     * Runs the Callable on the main thread and returns its result.
+     *
+     * Every Buffer, Window, List and Dict method called from inside the
+     * Callable takes its direct path, so reading the state of many windows
+     * and buffers costs a single handoff instead of one per accessor. Since
+     * the main thread is busy for the duration of the call, the Callable also
+     * sees a consistent snapshot that cannot interleave with user edits.
+     *
+     * Exceptions thrown by the Callable are rethrown here.
+     */
+    public static <T> T onMainThread(Callable<T> callable) throws Exception {
+        if (Thread.currentThread().getId() == mainThreadId) {
+            return callable.call();
+        } else {
+            CallableOperation<T> op = new CallableOperation<T>(callable);
+            op.waitUntilDone();
+            return op.ret;
         }
     }
 
+    /**
+     * Like onMainThread(), but gives up with a TimeoutException if the main
+     * thread has not started running the Callable within the timeout, or
+     * with an InterruptedException if this thread is interrupted first.
+     */
+    public static <T> T onMainThread(Callable<T> callable, long timeout, TimeUnit unit)
+        throws Exception
+    {
+        if (Thread.currentThread().getId() == mainThreadId) {
+            return callable.call();
+        } else {
+            CallableOperation<T> op = new CallableOperation<T>(callable);
+            op.waitUntilDone(timeout, unit);
+            return op.ret;
+        }
+    }
+
+    /**
+     * Creates an empty Batch for handing off many main thread operations at
+     * once.
+     */
+    public static Batch batch() {
+        return new Batch();
+    }
+
+    /**
+     * Returns a report of call counts and timings of every operation, native
+     * method and evaluation so far, along with the current and peak number of
+     * pending operations.
+     *
+     * The same numbers are available individually through Stats.
+     */
+    public static String stats() {
+        return Stats.report(numPendingOperations.get());
+    }
+
     /**
      * Displays the given text as a normal message in VIM.
      */
     public static void msg(String text) {
         if (Thread.currentThread().getId() == mainThreadId) {
+            long start = System.nanoTime();
             _msg(text);
+            msgStats.record(start);
         } else {
             MsgOperation op = new MsgOperation(text);
             try { op.waitUntilDone(); } catch (Exception e) {}
@@ -396,6 +1176,7 @@ public class Vim {
         Vim.msg(object.toString());
     }
     private static native void _msg(String text);
+    private static final Stats.Metric msgStats = Stats.nativeMethod("Vim._msg");
 
     /**
      * Displays the given text as an error message in VIM.
@@ -404,7 +1185,9 @@ public class Vim {
      */
     public static void emsg(String text) {
         if (Thread.currentThread().getId() == mainThreadId) {
+            long start = System.nanoTime();
             _emsg(text);
+            emsgStats.record(start);
         } else {
             EmsgOperation op = new EmsgOperation(text);
             try { op.waitUntilDone(); } catch (Exception e) {}
@@ -414,6 +1197,12 @@ public class Vim {
         Vim.emsg(object.toString());
     }
     private static native void _emsg(String text);
+    private static final Stats.Metric emsgStats = Stats.nativeMethod("Vim._emsg");
+    /**
+     * Displays each newline separated line of text as its own message.
+     */
+    private static native void _msgLines(String text, boolean isError);
+    private static final Stats.Metric msgLinesStats = Stats.nativeMethod("Vim._msgLines");
 
     /**
      * Evaluates the given Vim expression and converts it to the equivalent
@@ -421,7 +1210,10 @@ public class Vim {
      */
     public static Object eval(String text) throws Exception {
         if (Thread.currentThread().getId() == mainThreadId) {
-            return _eval(text);
+            long start = System.nanoTime();
+            Object ret = _eval(text);
+            evalStats.record(start);
+            return ret;
         } else {
             EvalOperation op = new EvalOperation(text);
             op.waitUntilDone();
@@ -429,6 +1221,7 @@ public class Vim {
         }
     }
     private static native Object _eval(String text);
+    private static final Stats.Metric evalStats = Stats.nativeMethod("Vim._eval");
 
     /**
      * Evaluate the given text as a VIM Ex command.
@@ -437,26 +1230,32 @@ public class Vim {
      */
     public static void command(String text) throws Exception {
         if (Thread.currentThread().getId() == mainThreadId) {
+            long start = System.nanoTime();
             _command(text);
+            commandStats.record(start);
         } else {
             CommandOperation op = new CommandOperation(text);
             op.waitUntilDone();
         }
     }
     private static native void _command(String text);
+    private static final Stats.Metric commandStats = Stats.nativeMethod("Vim._command");
 
     /**
      * Makes Vim beep.
      */
     public static void beep() throws Exception {
         if (Thread.currentThread().getId() == mainThreadId) {
+            long start = System.nanoTime();
             _beep();
+            beepStats.record(start);
         } else {
             BeepOperation op = new BeepOperation();
             op.waitUntilDone();
         }
     }
     private static native void _beep();
+    private static final Stats.Metric beepStats = Stats.nativeMethod("Vim._beep");
 
     /**
      * Returns a Java proxy object that represents a Vim buffer.
@@ -467,7 +1266,10 @@ public class Vim {
      */
     public static Buffer buffer(String arg) throws Exception {
         if (Thread.currentThread().getId() == mainThreadId) {
-            return _buffer(arg);
+            long start = System.nanoTime();
+            Buffer ret = _buffer(arg);
+            bufferStats.record(start);
+            return ret;
         } else {
             BufferOperation op = new BufferOperation(arg);
             op.waitUntilDone();
@@ -475,6 +1277,7 @@ public class Vim {
         }
     }
     private static native Buffer _buffer(String arg);
+    private static final Stats.Metric bufferStats = Stats.nativeMethod("Vim._buffer");
 
     /**
      * Marks that the buffer with buffer ID number has been freed, and
@@ -486,6 +1289,17 @@ public class Vim {
         Buffer.markBufferInvalid(bufferId);
     }
 
+    /**
+     * DO NOT USE.
+     *
+     * Called by Vim on the C side with the changes made to a buffer that has
+     * change listeners, see Buffer.addChangeListener().
+     */
+    public static void bufferChanged(int bufferId, int firstLine, int endLine,
+            int addedLines, long changedTick) {
+        Buffer.fireChange(bufferId, firstLine, endLine, addedLines, changedTick);
+    }
+
     /**
      * Returns a Java proxy object that represents a Vim window.
      *
@@ -497,7 +1311,10 @@ public class Vim {
      */
     public static Window window(String arg) throws Exception {
         if (Thread.currentThread().getId() == mainThreadId) {
-            return _window(arg);
+            long start = System.nanoTime();
+            Window ret = _window(arg);
+            windowStats.record(start);
+            return ret;
         } else {
             WindowOperation op = new WindowOperation(arg);
             op.waitUntilDone();
@@ -505,6 +1322,68 @@ public class Vim {
         }
     }
     private static native Window _window(String arg);
+    private static final Stats.Metric windowStats = Stats.nativeMethod("Vim._window");
+
+    /**
+     * Filters for buffers(): only buffers in the buffer list, that is with
+     * 'buflisted' set, and only buffers that are loaded.
+     */
+    public static final int BUFFERS_LISTED = 1;
+    public static final int BUFFERS_LOADED = 2;
+
+    /**
+     * Returns every buffer, in buffer list order.
+     */
+    public static Buffer[] buffers() throws Exception {
+        return buffers(0);
+    }
+    /**
+     * Returns the buffers that pass filter, a combination of the BUFFERS_*
+     * flags, in buffer list order.
+     *
+     * The whole list is built in one call into Vim, instead of one call per
+     * buffer as with Buffer.next().
+     */
+    public static Buffer[] buffers(int filter) throws Exception {
+        if (Thread.currentThread().getId() == mainThreadId) {
+            long start = System.nanoTime();
+            Buffer[] ret = _buffers(filter);
+            buffersStats.record(start);
+            return ret;
+        } else {
+            BuffersOperation op = new BuffersOperation(filter);
+            op.waitUntilDone();
+            return op.ret;
+        }
+    }
+    private static native Buffer[] _buffers(int filter);
+    private static final Stats.Metric buffersStats = Stats.nativeMethod("Vim._buffers");
+
+    /**
+     * Returns every window in every tab page, in order.
+     */
+    public static Window[] windows() throws Exception {
+        return windows(false);
+    }
+    /**
+     * Returns the windows of the current tab page if currentTabPage is true,
+     * otherwise those of every tab page, in one call into Vim.
+     */
+    public static Window[] windows(boolean currentTabPage) throws Exception {
+        if (Thread.currentThread().getId() == mainThreadId) {
+            long start = System.nanoTime();
+            Window[] ret = _windows(currentTabPage);
+            windowsStats.record(start);
+            return ret;
+        } else {
+            WindowsOperation op = new WindowsOperation(currentTabPage);
+            op.waitUntilDone();
+            return op.ret;
+        }
+    }
+    private static native Window[] _windows(boolean currentTabPage);
+    private static final Stats.Metric windowsStats = Stats.nativeMethod("Vim._windows");
+
     /**
      * Marks that a particular Vim window has been freed, and that no
      * operations should further be performed on it.
@@ -520,7 +1399,10 @@ public class Vim {
      */
     public static String line() throws Exception {
         if (Thread.currentThread().getId() == mainThreadId) {
-            return _line();
+            long start = System.nanoTime();
+            String ret = _line();
+            lineStats.record(start);
+            return ret;
         } else {
             LineOperation op = new LineOperation();
             op.waitUntilDone();
@@ -528,6 +1410,7 @@ public class Vim {
         }
     }
     private static native String _line();
+    private static final Stats.Metric lineStats = Stats.nativeMethod("Vim._line");
 
     /**
      * Opens a new buffer for file "fname" and returns it.
@@ -536,7 +1419,10 @@ public class Vim {
      */
     public static Buffer open(String fname) throws Exception {
         if (Thread.currentThread().getId() == mainThreadId) {
-            return _open(fname);
+            long start = System.nanoTime();
+            Buffer ret = _open(fname);
+            openStats.record(start);
+            return ret;
         } else {
             OpenOperation op = new OpenOperation(fname);
             op.waitUntilDone();
@@ -544,6 +1430,240 @@ public class Vim {
         }
     }
     private static native Buffer _open(String fname);
+    private static final Stats.Metric openStats = Stats.nativeMethod("Vim._open");
+
+    /**
+     * Told about each buffer opened by openAll(), on the main thread.
+     */
+    public interface OpenListener {
+        /**
+         * done counts the buffers opened so far, including this one.
+         */
+        void opened(Path path, Buffer buffer, int done, int total);
+    }
+
+    /**
+     * Opens a buffer for each of paths, loaded with the file's contents, and
+     * returns them in the same order. Files are read as UTF-8.
+     */
+    public static Buffer[] openAll(Collection<Path> paths) throws Exception {
+        return openAll(paths, StandardCharsets.UTF_8, null);
+    }
+    /**
+     * Opens a buffer for each of paths, loaded with the file's contents, and
+     * returns them in the same order.
+     *
+     * Unlike open(), the files are read, decoded with charset and split into
+     * lines in parallel on the common ForkJoinPool. The main thread only
+     * creates each buffer and fills it with the ready lines, one file per
+     * operation in the BULK lane, so the editor stays responsive while a
+     * large number of files is opened. listener, if not null, is called
+     * after each buffer is loaded.
+     *
+     * Buffers are loaded without triggering autocommands, so for example
+     * 'filetype' is not set. 'fileencoding' is set to the charset, and the
+     * text is converted to UTF-8, so 'encoding' must be "utf-8". Buffers
+     * that are already loaded are returned as they are. If a file cannot be
+     * read or loaded, the others are still opened and the first error is
+     * thrown at the end.
+     */
+    public static Buffer[] openAll(Collection<Path> paths, Charset charset,
+            OpenListener listener) throws Exception {
+        if (Thread.currentThread().getId() != mainThreadId) {
+            try {
+                return openAllAsync(paths, charset, listener).join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        // the main thread can't wait for operations, so it only waits for
+        // the files to be read and loads them itself
+        java.util.List<CompletableFuture<OpenFiles.Contents>> reads =
+            new ArrayList<CompletableFuture<OpenFiles.Contents>>();
+        for (Path path : paths) {
+            reads.add(readAsync(path, charset));
+        }
+        Buffer[] ret = new Buffer[reads.size()];
+        Exception error = null;
+        for (int i = 0; i < ret.length; ++i) {
+            try {
+                OpenFiles.Contents contents = reads.get(i).join();
+                ret[i] = openWithLines(contents);
+                if (listener != null)
+                    listener.opened(contents.path, ret[i], i + 1, ret.length);
+            } catch (CompletionException e) {
+                if (error == null)
+                    error = unwrap(e);
+            } catch (Exception e) {
+                if (error == null)
+                    error = e;
+            }
+        }
+        if (error != null)
+            throw error;
+        return ret;
+    }
+    private static CompletableFuture<OpenFiles.Contents> readAsync(
+            final Path path, final Charset charset) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return OpenFiles.read(path, charset);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, ForkJoinPool.commonPool());
+    }
+    private static Exception unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof UncheckedIOException)
+            return ((UncheckedIOException) cause).getCause();
+        if (cause instanceof Exception)
+            return (Exception) cause;
+        return e;
+    }
+    private static Buffer openWithLines(OpenFiles.Contents contents)
+        throws Exception
+    {
+        long start = System.nanoTime();
+        Buffer ret = _openWithLines(contents.path.toString(), contents.text,
+                contents.numLines, contents.eol, contents.dos,
+                contents.encoding);
+        openWithLinesStats.record(start);
+        return ret;
+    }
+    private static native Buffer _openWithLines(String fname, byte[] text,
+            int numLines, boolean eol, boolean dos, String encoding)
+        throws Exception;
+    private static final Stats.Metric openWithLinesStats =
+        Stats.nativeMethod("Vim._openWithLines");
+
+    ////////////////////////////////////////////////////////////////////////////
+    // Asynchronous variants
+    //
+    // These never block the calling thread. Each returns a CompletableFuture
+    // that completes on the main thread once the operation has been
+    // performed, or completes exceptionally with the exception it threw.
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Asynchronous version of onMainThread().
+     */
+    public static <T> CompletableFuture<T> onMainThreadAsync(Callable<T> callable) {
+        final CallableOperation<T> op = new CallableOperation<T>(callable);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of msg().
+     */
+    public static CompletableFuture<Void> msgAsync(String text) {
+        return new MsgOperation(text).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of emsg().
+     */
+    public static CompletableFuture<Void> emsgAsync(String text) {
+        return new EmsgOperation(text).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of eval().
+     */
+    public static CompletableFuture<Object> evalAsync(String text) {
+        final EvalOperation op = new EvalOperation(text);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of command().
+     */
+    public static CompletableFuture<Void> commandAsync(String text) {
+        return new CommandOperation(text).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of beep().
+     */
+    public static CompletableFuture<Void> beepAsync() {
+        return new BeepOperation().submitAsync();
+    }
+
+    /**
+     * Asynchronous version of buffer().
+     */
+    public static CompletableFuture<Buffer> bufferAsync(String arg) {
+        final BufferOperation op = new BufferOperation(arg);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of window().
+     */
+    public static CompletableFuture<Window> windowAsync(String arg) {
+        final WindowOperation op = new WindowOperation(arg);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of buffers().
+     */
+    public static CompletableFuture<Buffer[]> buffersAsync(int filter) {
+        final BuffersOperation op = new BuffersOperation(filter);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of windows().
+     */
+    public static CompletableFuture<Window[]> windowsAsync(boolean currentTabPage) {
+        final WindowsOperation op = new WindowsOperation(currentTabPage);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of openAll(). Each buffer is created as soon as
+     * its file has been read.
+     */
+    public static CompletableFuture<Buffer[]> openAllAsync(Collection<Path> paths,
+            Charset charset, final OpenListener listener) {
+        final int total = paths.size();
+        final AtomicInteger done = new AtomicInteger();
+        final java.util.List<CompletableFuture<Buffer>> opens =
+            new ArrayList<CompletableFuture<Buffer>>();
+        for (Path path : paths) {
+            opens.add(readAsync(path, charset).thenCompose(contents -> {
+                final OpenWithLinesOperation op = new OpenWithLinesOperation(
+                        contents, listener, done, total);
+                return op.submitAsync().thenApply(v -> op.ret);
+            }));
+        }
+        return CompletableFuture.allOf(opens.toArray(new CompletableFuture<?>[0]))
+            .thenApply(v -> {
+                Buffer[] ret = new Buffer[opens.size()];
+                for (int i = 0; i < ret.length; ++i) {
+                    ret[i] = opens.get(i).join();
+                }
+                return ret;
+            });
+    }
+
+    /**
+     * Asynchronous version of line().
+     */
+    public static CompletableFuture<String> lineAsync() {
+        final LineOperation op = new LineOperation();
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of open().
+     */
+    public static CompletableFuture<Buffer> openAsync(String fname) {
+        final OpenOperation op = new OpenOperation(fname);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
 
     ////////////////////////////////////////////////////////////////////////////
     // Internal operations for this class
@@ -551,25 +1671,79 @@ public class Vim {
 
     private static class MsgOperation extends Operation {
         String text;
+        /**
+         * Text of earlier messages merged into this one, followed by this
+         * one's own text, separated by newlines.
+         */
+        StringBuilder lines;
         public MsgOperation(String text) {
             super();
             this.text = text;
         }
         @Override
+        protected Lane lane() {
+            return Lane.BULK;
+        }
+        @Override
+        protected boolean coalesceInto(Operation later) {
+            if (!(later instanceof MsgOperation))
+                return false;
+            MsgOperation laterMsg = (MsgOperation) later;
+            laterMsg.lines = (lines != null) ? lines : new StringBuilder(text);
+            laterMsg.lines.append('\n').append(laterMsg.text);
+            return true;
+        }
+        @Override
         public void Do() throws Exception {
-            Vim.msg(text);
+            if (lines != null) {
+                long start = System.nanoTime();
+                Vim._msgLines(lines.toString(), false);
+                msgLinesStats.record(start);
+            } else
+                Vim.msg(text);
+        }
+        @Override
+        protected long payloadSize() {
+            return (lines != null) ? lines.length() : text.length();
         }
     }
 
     private static class EmsgOperation extends Operation {
         String text;
+        /**
+         * Text of earlier messages merged into this one, followed by this
+         * one's own text, separated by newlines.
+         */
+        StringBuilder lines;
         public EmsgOperation(String text) {
             super();
             this.text = text;
         }
         @Override
+        protected Lane lane() {
+            return Lane.BULK;
+        }
+        @Override
+        protected boolean coalesceInto(Operation later) {
+            if (!(later instanceof EmsgOperation))
+                return false;
+            EmsgOperation laterMsg = (EmsgOperation) later;
+            laterMsg.lines = (lines != null) ? lines : new StringBuilder(text);
+            laterMsg.lines.append('\n').append(laterMsg.text);
+            return true;
+        }
+        @Override
         public void Do() throws Exception {
-            Vim.emsg(text);
+            if (lines != null) {
+                long start = System.nanoTime();
+                Vim._msgLines(lines.toString(), true);
+                msgLinesStats.record(start);
+            } else
+                Vim.emsg(text);
+        }
+        @Override
+        protected long payloadSize() {
+            return (lines != null) ? lines.length() : text.length();
         }
     }
 
@@ -584,6 +1758,10 @@ public class Vim {
         public void Do() throws Exception {
             ret = Vim.eval(text);
         }
+        @Override
+        protected long payloadSize() {
+            return text.length();
+        }
     }
 
     private static class CommandOperation extends Operation {
@@ -596,6 +1774,10 @@ public class Vim {
         public void Do() throws Exception {
             Vim.command(text);
         }
+        @Override
+        protected long payloadSize() {
+            return text.length();
+        }
     }
 
     private static class BeepOperation extends Operation {
@@ -636,6 +1818,70 @@ public class Vim {
         }
     }
 
+    private static class BuffersOperation extends Operation {
+        int filter;
+        Buffer[] ret;
+        public BuffersOperation(int filter) {
+            super();
+            this.filter = filter;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = Vim.buffers(filter);
+        }
+        @Override
+        protected long payloadSize() {
+            return (ret != null) ? ret.length : 0;
+        }
+    }
+
+    private static class WindowsOperation extends Operation {
+        boolean currentTabPage;
+        Window[] ret;
+        public WindowsOperation(boolean currentTabPage) {
+            super();
+            this.currentTabPage = currentTabPage;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = Vim.windows(currentTabPage);
+        }
+        @Override
+        protected long payloadSize() {
+            return (ret != null) ? ret.length : 0;
+        }
+    }
+
+    private static class OpenWithLinesOperation extends Operation {
+        OpenFiles.Contents contents;
+        OpenListener listener;
+        AtomicInteger done;
+        int total;
+        Buffer ret;
+        public OpenWithLinesOperation(OpenFiles.Contents contents,
+                OpenListener listener, AtomicInteger done, int total) {
+            super();
+            this.contents = contents;
+            this.listener = listener;
+            this.done = done;
+            this.total = total;
+        }
+        @Override
+        protected Lane lane() {
+            return Lane.BULK;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = Vim.openWithLines(contents);
+            if (listener != null)
+                listener.opened(contents.path, ret, done.incrementAndGet(), total);
+        }
+        @Override
+        protected long payloadSize() {
+            return contents.numLines;
+        }
+    }
+
     private static class LineOperation extends Operation {
         String ret;
         public LineOperation() {
@@ -659,4 +1905,33 @@ public class Vim {
             ret = Vim.open(fname);
         }
     }
+
+    private static class BatchOperation extends Operation {
+        Batch batch;
+        public BatchOperation(Batch batch) {
+            super();
+            this.batch = batch;
+        }
+        @Override
+        public void Do() throws Exception {
+            batch.runAll();
+        }
+        @Override
+        protected long payloadSize() {
+            return batch.size();
+        }
+    }
+
+    private static class CallableOperation<T> extends Operation {
+        Callable<T> callable;
+        T ret;
+        public CallableOperation(Callable<T> callable) {
+            super();
+            this.callable = callable;
+        }
+        @Override
+        public void Do() throws Exception {
+            ret = callable.call();
+        }
+    }
 }
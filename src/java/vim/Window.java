@@ -2,6 +2,7 @@ package vim;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class Window {
     /**
@@ -41,6 +42,7 @@ public class Window {
             return windows.get(windowPointer);
         }
 
+        Events.proxyCacheMiss("Window", windowPointer, false, 0);
         Window window = new Window(windowPointer);
         windows.put(windowPointer, window);
         return window;
@@ -89,9 +91,13 @@ public class Window {
     private void _setAsCurrent() throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("setAsCurrent()");
+        long start = System.nanoTime();
         vim.Window._setAsCurrent(vimWindowPointer);
+        setAsCurrentStats.record(start);
     }
     private native static void _setAsCurrent(long pointer);
+    private static final Stats.Metric setAsCurrentStats =
+        Stats.nativeMethod("Window._setAsCurrent");
 
     /**
      * Gets the buffer associated with this window as a Java Buffer object.
@@ -108,9 +114,14 @@ public class Window {
     private Buffer _getBuffer() throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("getBuffer()");
-        return vim.Window._getBuffer(vimWindowPointer);
+        long start = System.nanoTime();
+        Buffer ret = vim.Window._getBuffer(vimWindowPointer);
+        getBufferStats.record(start);
+        return ret;
     }
     private native static Buffer _getBuffer(long pointer);
+    private static final Stats.Metric getBufferStats =
+        Stats.nativeMethod("Window._getBuffer");
 
     /**
      * Gets the current cursor line position of this window.
@@ -119,17 +130,27 @@ public class Window {
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             return _getLinePos();
         } else {
-            GetLinePosOperation op = new GetLinePosOperation(this);
-            op.waitUntilDone();
-            return op.ret;
+            GetLinePosOperation op = GetLinePosOperation.slot.get();
+            op.window = this;
+            try {
+                op.waitUntilDone();
+                return op.ret;
+            } finally {
+                op.clear();
+            }
         }
     }
     private int _getLinePos() throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("getLinePos  ()");
-        return vim.Window._getLinePos(vimWindowPointer);
+        long start = System.nanoTime();
+        int ret = vim.Window._getLinePos(vimWindowPointer);
+        getLinePosStats.record(start);
+        return ret;
     }
     private native static int _getLinePos(long pointer);
+    private static final Stats.Metric getLinePosStats =
+        Stats.nativeMethod("Window._getLinePos");
 
     /**
      * Sets the current cursor line position of this window.
@@ -148,13 +169,17 @@ public class Window {
     private void _setLinePos(int linePos) throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("setLinePos()");
+        long start = System.nanoTime();
         boolean ret = vim.Window._setLinePos(vimWindowPointer, linePos);
+        setLinePosStats.record(start);
         if (!ret) {
             throw new java.lang.IndexOutOfBoundsException(
                     "Window.setLinePos()");
         }
     }
     private native static boolean _setLinePos(long pointer, int linePos);
+    private static final Stats.Metric setLinePosStats =
+        Stats.nativeMethod("Window._setLinePos");
 
     /**
      * Gets the current cursor column position of this window.
@@ -163,17 +188,27 @@ public class Window {
         if (Thread.currentThread().getId() == Vim.getMainThreadId()) {
             return _getColPos();
         } else {
-            GetColPosOperation op = new GetColPosOperation(this);
-            op.waitUntilDone();
-            return op.ret;
+            GetColPosOperation op = GetColPosOperation.slot.get();
+            op.window = this;
+            try {
+                op.waitUntilDone();
+                return op.ret;
+            } finally {
+                op.clear();
+            }
         }
     }
     private int _getColPos() throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("getColPos()");
-        return vim.Window._getColPos(vimWindowPointer);
+        long start = System.nanoTime();
+        int ret = vim.Window._getColPos(vimWindowPointer);
+        getColPosStats.record(start);
+        return ret;
     }
     private native static int _getColPos(long pointer);
+    private static final Stats.Metric getColPosStats =
+        Stats.nativeMethod("Window._getColPos");
 
     /**
      * Sets the current cursor column position of this window.
@@ -189,9 +224,13 @@ public class Window {
     private void _setColPos(int colPos) throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("setColPos()");
+        long start = System.nanoTime();
         vim.Window._setColPos(vimWindowPointer, colPos);
+        setColPosStats.record(start);
     }
     private native static void _setColPos(long pointer, int colPos);
+    private static final Stats.Metric setColPosStats =
+        Stats.nativeMethod("Window._setColPos");
 
     /**
      * Gets the width of this window.
@@ -208,9 +247,14 @@ public class Window {
     private int _getWidth() throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("getWidth()");
-        return vim.Window._getWidth(vimWindowPointer);
+        long start = System.nanoTime();
+        int ret = vim.Window._getWidth(vimWindowPointer);
+        getWidthStats.record(start);
+        return ret;
     }
     private native static int _getWidth(long pointer);
+    private static final Stats.Metric getWidthStats =
+        Stats.nativeMethod("Window._getWidth");
 
     /**
      * Sets the width of this window.
@@ -226,9 +270,13 @@ public class Window {
     private void _setWidth(int width) throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("setWidth()");
+        long start = System.nanoTime();
         vim.Window._setWidth(vimWindowPointer, width);
+        setWidthStats.record(start);
     }
     private native static void _setWidth(long pointer, int width);
+    private static final Stats.Metric setWidthStats =
+        Stats.nativeMethod("Window._setWidth");
 
     /**
      * Gets the height of this window.
@@ -245,9 +293,14 @@ public class Window {
     private int _getHeight() throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("getHeight()");
-        return vim.Window._getHeight(vimWindowPointer);
+        long start = System.nanoTime();
+        int ret = vim.Window._getHeight(vimWindowPointer);
+        getHeightStats.record(start);
+        return ret;
     }
     private native static int _getHeight(long pointer);
+    private static final Stats.Metric getHeightStats =
+        Stats.nativeMethod("Window._getHeight");
 
     /**
      * Sets the height of this window.
@@ -263,9 +316,13 @@ public class Window {
     private void _setHeight(int height) throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("setHeight()");
+        long start = System.nanoTime();
         vim.Window._setHeight(vimWindowPointer, height);
+        setHeightStats.record(start);
     }
     private native static void _setHeight(long pointer, int height);
+    private static final Stats.Metric setHeightStats =
+        Stats.nativeMethod("Window._setHeight");
 
     /**
      * Returns the window "next" to this window.
@@ -282,9 +339,14 @@ public class Window {
     private Window _next() throws Exception {
         if (!isValid)
             throw new FreedWindowException("next()");
-        return vim.Window._next(vimWindowPointer);
+        long start = System.nanoTime();
+        Window ret = vim.Window._next(vimWindowPointer);
+        nextStats.record(start);
+        return ret;
     }
     private native static Window _next(long pointer);
+    private static final Stats.Metric nextStats =
+        Stats.nativeMethod("Window._next");
 
     /**
      * Returns the window "previous" to this window.
@@ -301,9 +363,14 @@ public class Window {
     private Window _previous() throws FreedWindowException {
         if (!isValid)
             throw new FreedWindowException("previous()");
-        return vim.Window._previous(vimWindowPointer);
+        long start = System.nanoTime();
+        Window ret = vim.Window._previous(vimWindowPointer);
+        previousStats.record(start);
+        return ret;
     }
     private native static Window _previous(long pointer);
+    private static final Stats.Metric previousStats =
+        Stats.nativeMethod("Window._previous");
 
     /**
      * Tests if this Java Window is referring to a valid in-memory Vim window,
@@ -314,6 +381,105 @@ public class Window {
         return isValid;
     }
 
+    ////////////////////////////////////////////////////////////////////////////
+    // Asynchronous variants
+    //
+    // These never block the calling thread. Each returns a CompletableFuture
+    // that completes on the main thread once the operation has been
+    // performed, or completes exceptionally with the exception it threw.
+    ////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * Asynchronous version of setAsCurrent().
+     */
+    public CompletableFuture<Void> setAsCurrentAsync() {
+        return new SetAsCurrentOperation(this).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of getBuffer().
+     */
+    public CompletableFuture<Buffer> getBufferAsync() {
+        final GetBufferOperation op = new GetBufferOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of getLinePos().
+     */
+    public CompletableFuture<Integer> getLinePosAsync() {
+        final GetLinePosOperation op = new GetLinePosOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of setLinePos().
+     */
+    public CompletableFuture<Void> setLinePosAsync(int linePos) {
+        return new SetLinePosOperation(this, linePos).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of getColPos().
+     */
+    public CompletableFuture<Integer> getColPosAsync() {
+        final GetColPosOperation op = new GetColPosOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of setColPos().
+     */
+    public CompletableFuture<Void> setColPosAsync(int colPos) {
+        return new SetColPosOperation(this, colPos).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of getWidth().
+     */
+    public CompletableFuture<Integer> getWidthAsync() {
+        final GetWidthOperation op = new GetWidthOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of setWidth().
+     */
+    public CompletableFuture<Void> setWidthAsync(int width) {
+        return new SetWidthOperation(this, width).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of getHeight().
+     */
+    public CompletableFuture<Integer> getHeightAsync() {
+        final GetHeightOperation op = new GetHeightOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of setHeight().
+     */
+    public CompletableFuture<Void> setHeightAsync(int height) {
+        return new SetHeightOperation(this, height).submitAsync();
+    }
+
+    /**
+     * Asynchronous version of next().
+     */
+    public CompletableFuture<Window> nextAsync() {
+        final NextOperation op = new NextOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
+    /**
+     * Asynchronous version of previous().
+     */
+    public CompletableFuture<Window> previousAsync() {
+        final PreviousOperation op = new PreviousOperation(this);
+        return op.submitAsync().thenApply(v -> op.ret);
+    }
+
     ////////////////////////////////////////////////////////////////////////////
     // Internal operations for this class
     ////////////////////////////////////////////////////////////////////////////
@@ -344,6 +510,8 @@ public class Window {
     }
 
     private static class GetLinePosOperation extends Vim.Operation {
+        static final ThreadLocal<GetLinePosOperation> slot =
+            ThreadLocal.withInitial(() -> new GetLinePosOperation(null));
         Window window;
         int ret;
         public GetLinePosOperation(Window window) {
@@ -351,6 +519,11 @@ public class Window {
             this.window = window;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            window = null;
+        }
+        @Override
         public void Do() throws Exception {
             ret = window.getLinePos();
         }
@@ -371,6 +544,8 @@ public class Window {
     }
 
     private static class GetColPosOperation extends Vim.Operation {
+        static final ThreadLocal<GetColPosOperation> slot =
+            ThreadLocal.withInitial(() -> new GetColPosOperation(null));
         Window window;
         int ret;
         public GetColPosOperation(Window window) {
@@ -378,6 +553,11 @@ public class Window {
             this.window = window;
         }
         @Override
+        protected void clear() {
+            super.clear();
+            window = null;
+        }
+        @Override
         public void Do() throws Exception {
             ret = window.getColPos();
         }
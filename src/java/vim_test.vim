@@ -15,3 +15,7 @@
 :java (Vim/emsg "error while erroring")
 
 :java (Vim/command ":java (Vim/msg \"woah\")")
+
+" three messages queued back to back from the REPL thread coalesce into one
+" operation, and all three must still complete: expect "coalesced: [nil nil nil]"
+:java (Vim/msg (str "coalesced: " (vec (map #(.get ^java.util.concurrent.CompletableFuture % 5 java.util.concurrent.TimeUnit/SECONDS) [(Vim/msgAsync "one") (Vim/msgAsync "two") (Vim/msgAsync "three")]))))
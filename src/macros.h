@@ -268,7 +268,8 @@
 # define PLINES_NOFILL(x) plines(x)
 #endif
 
-#if defined(FEAT_JOB_CHANNEL) || defined(FEAT_CLIENTSERVER)
+#if defined(FEAT_JOB_CHANNEL) || defined(FEAT_CLIENTSERVER) \
+	|| defined(FEAT_JAVA)
 # define MESSAGE_QUEUE
 #endif
 
@@ -6155,6 +6155,9 @@ RealWaitForChar(int fd, long msec, int *check_for_gpm UNUSED, int *interrupted)
 # endif
 # ifdef USE_XSMP
 	int		xsmp_idx = -1;
+# endif
+# ifdef FEAT_JAVA
+	int		java_fd = java_wakeup_fd();
 # endif
 	int		towait = (int)msec;
 
@@ -6198,6 +6201,15 @@ RealWaitForChar(int fd, long msec, int *check_for_gpm UNUSED, int *interrupted)
 	    nfd++;
 	}
 # endif
+# ifdef FEAT_JAVA
+	if (java_fd >= 0)
+	{
+	    // A background Java thread writes to this to wake us up.
+	    fds[nfd].fd = java_fd;
+	    fds[nfd].events = POLLIN;
+	    nfd++;
+	}
+# endif
 #ifdef FEAT_JOB_CHANNEL
 	nfd = channel_poll_setup(nfd, &fds, &towait);
 #endif
@@ -6263,6 +6275,9 @@ RealWaitForChar(int fd, long msec, int *check_for_gpm UNUSED, int *interrupted)
 	static fd_set	rfds, wfds, efds;
 	int		maxfd;
 	long		towait = msec;
+# ifdef FEAT_JAVA
+	int		java_fd = java_wakeup_fd();
+# endif
 
 # ifdef FEAT_MZSCHEME
 	mzvim_check_threads();
@@ -6327,6 +6342,15 @@ select_eintr:
 		maxfd = xsmp_icefd;
 	}
 # endif
+# ifdef FEAT_JAVA
+	if (java_fd >= 0)
+	{
+	    // A background Java thread writes to this to wake us up.
+	    FD_SET(java_fd, &rfds);
+	    if (maxfd < java_fd)
+		maxfd = java_fd;
+	}
+# endif
 # ifdef FEAT_JOB_CHANNEL
 	maxfd = channel_select_setup(maxfd, &rfds, &wfds, &tv, &tvp);
 # endif
@@ -4,10 +4,14 @@ void java_end __ARGS((void));
 void ex_java __ARGS((exarg_T *eap));
 void ex_javafile __ARGS((exarg_T *eap));
 void ex_javarepl __ARGS((exarg_T *eap));
+void ex_javastats __ARGS((exarg_T *eap));
 void java_buffer_free __ARGS((buf_T *buf));
 void java_window_free __ARGS((win_T *win));
 void do_javaeval __ARGS((char_u *str, typval_T *rettv));
 int set_ref_in_java __ARGS((int copyID));
 void java_list_purge __ARGS((list_T *l));
 void java_dict_purge __ARGS((dict_T *d));
+int java_wakeup_fd __ARGS((void));
+void java_parse_pending_operations __ARGS((void));
+void java_record_change __ARGS((buf_T *buf, linenr_T lnum, linenr_T lnume, long xtra));
 /* vim: set ft=c : */
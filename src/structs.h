@@ -3072,6 +3072,13 @@ struct file_buffer
     void	*b_ruby_ref;
 #endif
 
+#ifdef FEAT_JAVA
+    int		b_java_listen;	// TRUE when Java listens to changes
+    linenr_T	b_java_change_lnum;  // changes not yet passed to Java, as
+    linenr_T	b_java_change_lnume; // for changed_lines(); lnum is zero
+    long	b_java_change_xtra;  // when there are none
+#endif
+
 #if defined(FEAT_SYN_HL) || defined(FEAT_SPELL)
     synblock_T	b_s;		// Info related to syntax highlighting.  w_s
 				// normally points to this, but some windows